@@ -21,6 +21,7 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-data-jpa")
 	implementation("org.springframework.boot:spring-boot-starter-security")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
 	implementation("org.springframework.session:spring-session-data-redis")
 	implementation("org.springframework.boot:spring-boot-starter-data-redis")
 	implementation("org.postgresql:postgresql")
@@ -28,6 +29,8 @@ dependencies {
 	implementation("org.hibernate.validator:hibernate-validator")
 	implementation("org.glassfish.expressly:expressly:6.0.0")
 	implementation("io.minio:minio:8.6.0")
+	implementation("org.apache.commons:commons-fileupload2-jakarta-servlet6:2.0.0-M2")
+	implementation("org.apache.commons:commons-compress:1.27.1")
 	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.8.13")
 
 	implementation(platform("org.testcontainers:testcontainers-bom:1.21.3"))
@@ -45,3 +48,20 @@ dependencies {
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+tasks.test {
+	useJUnitPlatform {
+		excludeTags("benchmark")
+	}
+}
+
+tasks.register<Test>("benchmark") {
+	description = "Runs tests tagged as benchmark"
+	group = "verification"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	useJUnitPlatform {
+		includeTags("benchmark")
+	}
+	testLogging.showStandardStreams = true
+}
@@ -0,0 +1,33 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.cas")
+@Component
+@Getter
+@Setter
+public class ContentAddressedStorageProperties {
+
+    /**
+     * Uploaded files are stored once per SHA-256 of their content, user paths keep only a reference to it.
+     * Objects written before it was enabled and resumable uploads stay plain objects.
+     * Pointers are resolved only while it is enabled, so it can't be disabled once they are written
+     */
+    private boolean enabled = false;
+
+    /**
+     * Key prefix of content objects, must not look like a user root folder
+     */
+    private String prefix = "cas/";
+
+    /**
+     * How often content objects without references are removed
+     */
+    private Duration sweepInterval = Duration.ofMinutes(10);
+
+}
@@ -0,0 +1,124 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.Deflater;
+
+@ConfigurationProperties(prefix = "storage.download")
+@Component
+@Getter
+@Setter
+public class DownloadProperties {
+
+    /**
+     * Size of the buffer used to copy object content to the response, bytes
+     */
+    private int bufferSize = 8192;
+
+    /**
+     * Number of objects opened ahead of the one being written into a folder archive, 0 disables prefetching
+     */
+    private int zipPrefetchDepth = 4;
+
+    /**
+     * Maximum number of bytes read in advance from every prefetched object, the rest is streamed when
+     * the object is written into the archive
+     */
+    private int zipPrefetchBufferSize = 256 * 1024;
+
+    /**
+     * Size of the thread pool shared by all archives being generated
+     */
+    private int zipPrefetchThreads = 16;
+
+    /**
+     * Capacity of prefetch queue, when it is full objects are fetched by the thread writing the archive
+     */
+    private int zipPrefetchQueueCapacity = 64;
+
+    /**
+     * Deflate level used for compressible archive entries, from 1 to 9 or -1 for zlib default
+     */
+    private int zipDeflateLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Entries of these content types (resolved by file extension) are already compressed and not deflated
+     */
+    private List<String> zipStoredContentTypes = List.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/heic",
+            "video/*", "audio/mpeg", "audio/aac", "audio/ogg", "audio/flac",
+            "application/zip", "application/gzip", "application/x-7z-compressed", "application/x-rar-compressed",
+            "application/x-bzip2", "application/x-xz", "application/pdf", "application/java-archive"
+    );
+
+    /**
+     * Extensions of already compressed formats missing in content type mappings
+     */
+    private List<String> zipStoredExtensions = List.of(
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "apk", "zst", "tgz", "woff2"
+    );
+
+    /**
+     * Entries whose first block has higher Shannon entropy (bits per byte, 8 at most) are not deflated
+     */
+    private double zipEntropyThreshold = 7.5;
+
+    /**
+     * If enabled, file downloads are answered with a redirect to presigned MinIO URL, so file content
+     * does not pass through the application. MinIO must be reachable by clients then
+     */
+    private boolean presignedRedirect = false;
+
+    /**
+     * Lifetime of presigned download URLs
+     */
+    private Duration presignedUrlExpiry = Duration.ofMinutes(1);
+
+    /**
+     * If enabled, folders are downloaded as deterministic archives of STORED entries with known length,
+     * which support byte ranges, so an interrupted download can be resumed
+     */
+    private boolean resumableArchives = false;
+
+    /**
+     * How long CRCs of archived objects are kept, they are needed to resume archive from the middle
+     */
+    private Duration resumableCrcTtl = Duration.ofDays(7);
+
+    /**
+     * If enabled, compressible files are sent with gzip Content-Encoding to clients which accept it
+     */
+    private boolean gzipEnabled = true;
+
+    /**
+     * Smaller files are sent as is, gzip framing and CPU cost are not worth it, bytes
+     */
+    private long gzipMinSize = 1024;
+
+    /**
+     * Deflate level of gzip Content-Encoding, low levels keep CPU cost per download small
+     */
+    private int gzipLevel = Deflater.BEST_SPEED;
+
+    /**
+     * Content types which are compressed, files stored as application/octet-stream are resolved by extension
+     */
+    private List<String> gzipContentTypes = List.of(
+            "text/*", "application/json", "application/*+json", "application/x-ndjson", "application/xml",
+            "application/*+xml", "application/javascript", "application/yaml", "application/sql", "image/svg+xml"
+    );
+
+    /**
+     * Extensions of text formats missing in content type mappings
+     */
+    private List<String> gzipExtensions = List.of(
+            "log", "csv", "tsv", "md", "yml", "yaml", "toml", "ini", "conf", "properties", "sql",
+            "java", "kt", "py", "ts", "go", "rs", "c", "h", "cpp", "sh"
+    );
+
+}
@@ -0,0 +1,28 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.index")
+@Component
+@Getter
+@Setter
+public class IndexProperties {
+
+    /**
+     * How often folder sizes and file counts are recomputed from the index, which fixes drift of their
+     * incremental updates. Trees which are not indexed completely are listed from MinIO first
+     */
+    private Duration reconcileInterval = Duration.ofHours(6);
+
+    /**
+     * How often changes of folder sizes and file counts are written, they are summed per folder in between.
+     * Aggregates lag behind writes by up to this interval
+     */
+    private Duration totalsFlushInterval = Duration.ofSeconds(1);
+
+}
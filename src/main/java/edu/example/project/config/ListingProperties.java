@@ -0,0 +1,19 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@ConfigurationProperties(prefix = "storage.listing")
+@Component
+@Getter
+@Setter
+public class ListingProperties {
+
+    /**
+     * Larger requested page sizes of folder content are reduced to it
+     */
+    private int maxLimit = 1000;
+
+}
@@ -1,5 +1,6 @@
 package edu.example.project.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -20,4 +21,14 @@ public class MinioClientConfig {
                 .credentials(minioClientProperties.getUser(), minioClientProperties.getPassword())
                 .build();
     }
+
+    @Bean
+    public MultipartMinioClient configuredMultipartMinioClient() {
+        return new MultipartMinioClient(
+                MinioAsyncClient.builder()
+                        .endpoint(minioClientProperties.getEndpoint())
+                        .credentials(minioClientProperties.getUser(), minioClientProperties.getPassword())
+                        .build()
+        );
+    }
 }
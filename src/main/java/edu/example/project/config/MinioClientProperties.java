@@ -15,4 +15,15 @@ public class MinioClientProperties {
 
     private String password;
 
+    /**
+     * Endpoint clients use to reach MinIO, if it differs from the one used by the application.
+     * Presigned URLs are signed for this host
+     */
+    private String publicEndpoint;
+
+    /**
+     * Region used to sign URLs for public endpoint without asking MinIO for it
+     */
+    private String region = "us-east-1";
+
 }
@@ -0,0 +1,64 @@
+package edu.example.project.config;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Exposes low level multipart upload calls of MinIO client, which are protected there.
+ * They let one object be uploaded by parts sent in separate requests
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String createMultipartUpload(String bucket, String object, String contentType)
+            throws InsufficientDataException, InternalException, InvalidKeyException, IOException,
+            NoSuchAlgorithmException, XmlParserException, InterruptedException, ExecutionException {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("Content-Type", contentType);
+        return createMultipartUploadAsync(bucket, null, object, headers, HashMultimap.create())
+                .get()
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * @return etag of the part, needed to complete the upload
+     */
+    public String uploadPart(String bucket, String object, String uploadId, int partNumber, InputStream data, long length)
+            throws InsufficientDataException, InternalException, InvalidKeyException, IOException,
+            NoSuchAlgorithmException, XmlParserException, InterruptedException, ExecutionException {
+        return uploadPartAsync(bucket, null, object, data, length, uploadId, partNumber, HashMultimap.create(), HashMultimap.create())
+                .get()
+                .etag();
+    }
+
+    public ObjectWriteResponse completeMultipartUpload(String bucket, String object, String uploadId, Part[] parts)
+            throws InsufficientDataException, InternalException, InvalidKeyException, IOException,
+            NoSuchAlgorithmException, XmlParserException, InterruptedException, ExecutionException {
+        return completeMultipartUploadAsync(bucket, null, object, uploadId, parts, HashMultimap.create(), HashMultimap.create())
+                .get();
+    }
+
+    public void abortMultipartUpload(String bucket, String object, String uploadId)
+            throws InsufficientDataException, InternalException, InvalidKeyException, IOException,
+            NoSuchAlgorithmException, XmlParserException, InterruptedException, ExecutionException {
+        abortMultipartUploadAsync(bucket, null, object, uploadId, HashMultimap.create(), HashMultimap.create())
+                .get();
+    }
+
+}
@@ -0,0 +1,48 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.pack")
+@Component
+@Getter
+@Setter
+public class PackProperties {
+
+    /**
+     * Small files of multi-file uploads are written together into pack objects instead of one object each.
+     * Ignored while content-addressed storage is enabled
+     */
+    private boolean enabled = false;
+
+    /**
+     * Largest file which is packed
+     */
+    private long threshold = 16 * 1024;
+
+    /**
+     * Pack is closed once its content reaches this size, one pack is held in memory while it is written
+     */
+    private long packSize = 8 * 1024 * 1024;
+
+    /**
+     * Key prefix of pack objects, must not look like a user root folder
+     */
+    private String prefix = "packs/";
+
+    /**
+     * Pack is rewritten with its live files only, once this share of its bytes belongs to removed files
+     */
+    private double compactionDeadRatio = 0.5;
+
+    /**
+     * How often packs are compacted. Replaced packs are removed one interval later, so reads which
+     * have already resolved a file to them can finish
+     */
+    private Duration compactionInterval = Duration.ofHours(1);
+
+}
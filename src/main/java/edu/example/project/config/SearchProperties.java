@@ -0,0 +1,31 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.search")
+@Component
+@Getter
+@Setter
+public class SearchProperties {
+
+    /**
+     * Number of results returned if the request has no limit
+     */
+    private int defaultLimit = 50;
+
+    /**
+     * Larger requested limits are reduced to it
+     */
+    private int maxLimit = 500;
+
+    /**
+     * Streamed search stops passing results after this time and reports them as truncated
+     */
+    private Duration timeout = Duration.ofSeconds(2);
+
+}
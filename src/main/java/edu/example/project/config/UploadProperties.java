@@ -0,0 +1,70 @@
+package edu.example.project.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "storage.upload")
+@Component
+@Getter
+@Setter
+public class UploadProperties {
+
+    /**
+     * Part size of MinIO multipart upload for streams and big files, 5MB at least
+     */
+    private long partSize = 10 * 1024 * 1024;
+
+    /**
+     * Parts of one file uploaded at once
+     */
+    private int partParallelism = 4;
+
+    /**
+     * Part buffers shared by all uploads of the application node, uploads wait for a free one.
+     * Bounds heap taken by uploads to partBuffers * partSize
+     */
+    private int partBuffers = 16;
+
+    /**
+     * Files of one upload request processed at once
+     */
+    private int parallelism = 8;
+
+    /**
+     * Files processed at once by all upload requests of the application node
+     */
+    private int globalParallelism = 64;
+
+    /**
+     * Archive entries up to this size are read into memory and written concurrently with reading the archive,
+     * bigger ones are written by the thread reading it. Bounds heap taken by one extraction to about
+     * (parallelism + 1) * archiveEntryBufferSize
+     */
+    private long archiveEntryBufferSize = 1024 * 1024;
+
+    /**
+     * Chunk size of resumable uploads, every chunk is a MinIO multipart upload part, so 5MB at least.
+     * Bigger chunks are used for files which would need more than 10000 parts
+     */
+    private long chunkSize = 8 * 1024 * 1024;
+
+    /**
+     * Largest file accepted by resumable upload
+     */
+    private long maxResumableFileSize = 50L * 1024 * 1024 * 1024;
+
+    /**
+     * Resumable upload session is aborted if no chunk was received for this long
+     */
+    private Duration sessionTtl = Duration.ofHours(24);
+
+    /**
+     * How often expired resumable upload sessions are looked for
+     */
+    private Duration sessionCleanupInterval = Duration.ofMinutes(1);
+
+}
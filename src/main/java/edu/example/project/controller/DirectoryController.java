@@ -2,6 +2,7 @@ package edu.example.project.controller;
 
 import edu.example.project.dto.PathRequest;
 import edu.example.project.dto.ResourceDto;
+import edu.example.project.dto.ResourcePageDto;
 import edu.example.project.dto.ResponseMessage;
 import edu.example.project.exception.ResourceAlreadyExistsException;
 import edu.example.project.exception.ResourceNotFoundException;
@@ -82,6 +83,72 @@ public class DirectoryController {
         return ResponseEntity.status(HttpStatus.OK).body(resources);
     }
 
+    @Operation(
+            summary = "Get page of folder content",
+            description = "### Return not recursive folder content page by page, used instead of the whole list if limit is given",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "path",
+                            in = ParameterIn.QUERY,
+                            description = "Absolute path to folder (slash-separated)",
+                            example = "path/to/folder/",
+                            required = true
+                    ),
+                    @Parameter(
+                            name = "limit",
+                            in = ParameterIn.QUERY,
+                            description = "Maximum number of resources in the page, limited by the server",
+                            example = "100",
+                            required = true
+                    ),
+                    @Parameter(
+                            name = "cursor",
+                            in = ParameterIn.QUERY,
+                            description = "nextCursor of the previous page, omitted for the first page",
+                            example = "ZmlsZS50eHQ"
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Successfully found folder content page",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResourcePageDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path or cursor",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Folder does not exist",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @GetMapping(params = "limit")
+    public ResponseEntity<ResourcePageDto> getFolderContentsPage(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                 @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest,
+                                                                 @RequestParam("limit") int limit,
+                                                                 @RequestParam(value = "cursor", required = false) String cursor
+    ) throws ResourceNotFoundException {
+        ResourcePageDto page = resourceService.getFolderContents(principle.getId(), pathRequest.getPath(), cursor, limit);
+        return ResponseEntity.status(HttpStatus.OK).body(page);
+    }
+
     @Operation(
             summary = "Create folder",
             description = "### Create folder",
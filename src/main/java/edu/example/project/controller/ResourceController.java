@@ -1,34 +1,47 @@
 package edu.example.project.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.example.project.controller.download.DownloadResponseFactory;
+import edu.example.project.controller.upload.ArchiveEntryParser;
+import edu.example.project.controller.upload.QueryPathRequestReader;
+import edu.example.project.controller.upload.StreamingMultipartParser;
+import edu.example.project.dto.BatchPathRequest;
+import edu.example.project.dto.HashUploadRequest;
 import edu.example.project.dto.PathRequest;
 import edu.example.project.dto.ResourceDto;
 import edu.example.project.dto.ResponseMessage;
 import edu.example.project.exception.ResourceAlreadyExistsException;
 import edu.example.project.exception.ResourceNotFoundException;
 import edu.example.project.security.UserDetailsImpl;
+import edu.example.project.service.DownloadableResource;
 import edu.example.project.service.ResourceService;
+import edu.example.project.service.UploadPart;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.*;
-import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/resource")
@@ -37,6 +50,16 @@ public class ResourceController {
 
     private final ResourceService resourceService;
 
+    private final DownloadResponseFactory downloadResponseFactory;
+
+    private final StreamingMultipartParser streamingMultipartParser;
+
+    private final QueryPathRequestReader queryPathRequestReader;
+
+    private final ArchiveEntryParser archiveEntryParser;
+
+    private final ObjectMapper objectMapper;
+
     @Operation(
             summary = "Download resource",
             description = "### Download specified resource",
@@ -59,6 +82,24 @@ public class ResourceController {
                     schema = @Schema(type = "string", format = "binary", example = "File")
             )
     )
+    @ApiResponse(
+            responseCode = "206",
+            description = "Requested byte range(s) of the file, several ranges are sent as multipart/byteranges",
+            content = @Content(
+                    mediaType = "application/octet-stream",
+                    schema = @Schema(type = "string", format = "binary", example = "File")
+            )
+    )
+    @ApiResponse(
+            responseCode = "302",
+            description = "Redirect to short-lived presigned MinIO URL of the file, if presigned redirect is enabled",
+            content = @Content()
+    )
+    @ApiResponse(
+            responseCode = "304",
+            description = "File was not modified since the version identified by If-None-Match or If-Modified-Since",
+            content = @Content()
+    )
     @ApiResponse(
             responseCode = "400",
             description = "Invalid path",
@@ -75,26 +116,80 @@ public class ResourceController {
                     schema = @Schema(implementation = ResponseMessage.class)
             )
     )
+    @ApiResponse(
+            responseCode = "416",
+            description = "None of requested byte ranges can be satisfied",
+            content = @Content()
+    )
     @ApiResponse(
             responseCode = "401",
             description = "Unauthorized",
             content = @Content()
     )
     @GetMapping("/download")
-    public ResponseEntity<Resource> downloadResource(@AuthenticationPrincipal UserDetailsImpl principle,
-                                                     @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest
-    ) throws IOException, ResourceNotFoundException {
-        byte[] resourceBinaryContent = resourceService.getResourceBinaryContent(principle.getId(), pathRequest.getPath());
-        String resourceName = resourceService.resolveDownloadedResourceName(pathRequest.getPath());
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resourceName + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM).body(new ByteArrayResource(resourceBinaryContent));
+    public ResponseEntity<StreamingResponseBody> downloadResource(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                  @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest,
+                                                                  ServletWebRequest webRequest
+    ) throws ResourceNotFoundException {
+        DownloadableResource resource = resourceService.getDownloadableResource(principle.getId(), pathRequest.getPath());
+        return downloadResponseFactory.createResponse(resource, webRequest);
+    }
+
+    @Operation(
+            summary = "Download several resources",
+            description = "### Download files and folders as one zip archive, every resource is placed at the archive root",
+            security = @SecurityRequirement(name = "Session-based"),
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "### Paths of resources to download")
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Resources downloaded successfully",
+            content = @Content(
+                    mediaType = "application/octet-stream",
+                    schema = @Schema(type = "string", format = "binary", example = "File")
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid paths",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Resource not found",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping(value = "/download", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> downloadResources(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                   @Valid @RequestBody BatchPathRequest batchPathRequest
+    ) throws ResourceNotFoundException {
+        List<DownloadableResource> resources = resourceService.getDownloadableResources(principle.getId(), batchPathRequest.getPaths());
+        return downloadResponseFactory.createArchiveResponse(resources);
     }
 
     @Operation(
             summary = "Search resource",
-            description = "Search a collection of resources by prefix from query",
-            security = @SecurityRequirement(name = "Session-based")
+            description = "Search resources whose names contain query, case-insensitive. Exact matches go first, then names starting with query",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "limit",
+                            in = ParameterIn.QUERY,
+                            description = "Maximum number of results, limited by the server",
+                            example = "50"
+                    )
+            }
     )
     @ApiResponse(
             responseCode = "200",
@@ -119,11 +214,72 @@ public class ResourceController {
     )
     @GetMapping("/search")
     public ResponseEntity<List<ResourceDto>> searchResource(@AuthenticationPrincipal UserDetailsImpl principle,
-                                                            @RequestParam("query") String query) {
-        List<ResourceDto> resources = resourceService.findResourcesInfo(principle.getId(), query);
+                                                            @RequestParam("query") String query,
+                                                            @RequestParam(value = "limit", required = false) Integer limit) {
+        List<ResourceDto> resources = resourceService.findResourcesInfo(principle.getId(), query, limit);
         return ResponseEntity.status(HttpStatus.OK).body(resources);
     }
 
+    @Operation(
+            summary = "Stream search results",
+            description = "### Same search, requested with stream=true. Every line is a found resource, sent as soon as it is found. "
+                    + "The last line is {\"truncated\": true} if results were cut by limit or by the server time budget",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "limit",
+                            in = ParameterIn.QUERY,
+                            description = "Maximum number of results, limited by the server",
+                            example = "50"
+                    ),
+                    @Parameter(
+                            name = "stream",
+                            in = ParameterIn.QUERY,
+                            description = "Results are streamed as NDJSON",
+                            example = "true",
+                            required = true
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Found resources, one per line, followed by truncated flag",
+            content = @Content(
+                    mediaType = "application/x-ndjson",
+                    schema = @Schema(implementation = ResourceDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @GetMapping(value = "/search", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamSearchResource(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                      @RequestParam("query") String query,
+                                                                      @RequestParam(value = "limit", required = false) Integer limit) {
+        Long userId = principle.getId();
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> {
+                    boolean truncated = resourceService.streamResourcesInfo(userId, query, limit, resource -> writeLine(out, resource));
+                    writeLine(out, Map.of("truncated", truncated));
+                });
+    }
+
+    /**
+     * Every line is flushed, so the client gets it while the search goes on
+     */
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
     @Operation(
             summary = "Move/Rename resource",
             description = "### If you want to rename - change only resource name, if you want to move - change only resource path",
@@ -241,6 +397,210 @@ public class ResourceController {
         return ResponseEntity.status(HttpStatus.CREATED).body(resources);
     }
 
+    @Operation(
+            summary = "Upload resource streaming",
+            description = "### Upload resource to specified directory without spooling files on the server\n"
+                    + "Files are written to storage while request body is read. Conflicts are checked for every file "
+                    + "before its content, on conflict files uploaded by the request are removed",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "path",
+                            in = ParameterIn.QUERY,
+                            description = "Path to directory (slash-separated) where to upload",
+                            example = "path/to/",
+                            required = true
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "201",
+            description = "List of uploaded resources",
+            content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ResourceDto.class))
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "409",
+            description = "Resource already exists",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "413",
+            description = "File or request is too large",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping(value = "/stream", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public ResponseEntity<List<ResourceDto>> uploadResourcesStreaming(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                      HttpServletRequest request
+    ) throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        PathRequest pathRequest = queryPathRequestReader.read(request);
+        Iterator<UploadPart> parts = streamingMultipartParser.parse(request);
+        List<ResourceDto> resources = resourceService.uploadResources(principle.getId(), pathRequest.getPath(), parts);
+        return ResponseEntity.status(HttpStatus.CREATED).body(resources);
+    }
+
+    @Operation(
+            summary = "Upload archive",
+            description = "### Upload ZIP, TAR or gzipped TAR archive and extract it into specified directory\n"
+                    + "Archive is extracted while request body is read. Entry names follow the same rules as paths, "
+                    + "every entry is limited by max file size. On conflict files extracted by the request are removed",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "path",
+                            in = ParameterIn.QUERY,
+                            description = "Path to directory (slash-separated) where to extract",
+                            example = "path/to/",
+                            required = true
+                    )
+            },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "### Archive",
+                    content = @Content(
+                            mediaType = "application/octet-stream",
+                            schema = @Schema(type = "string", format = "binary")
+                    )
+            )
+    )
+    @ApiResponse(
+            responseCode = "201",
+            description = "List of extracted files",
+            content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ResourceDto.class))
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path, unsupported archive or invalid entry name",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Folder does not exist",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "409",
+            description = "Resource already exists",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "413",
+            description = "Archive entry is too large",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping(value = "/archive", consumes = {"application/zip", "application/x-tar", "application/gzip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<List<ResourceDto>> uploadArchive(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                           @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest,
+                                                           HttpServletRequest request
+    ) throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Iterator<UploadPart> entries = archiveEntryParser.parse(request.getInputStream());
+        List<ResourceDto> resources = resourceService.extractArchive(principle.getId(), pathRequest.getPath(), entries);
+        return ResponseEntity.status(HttpStatus.CREATED).body(resources);
+    }
+
+    @Operation(
+            summary = "Upload resource by hash",
+            description = "### Upload file to specified directory without sending its content\n"
+                    + "Succeeds only if content-addressed storage is enabled and the user already has a file with "
+                    + "the same SHA-256 and size, otherwise the file has to be uploaded with its content",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "path",
+                            in = ParameterIn.QUERY,
+                            description = "Path to directory (slash-separated) where to upload",
+                            example = "path/to/",
+                            required = true
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "201",
+            description = "Uploaded resource",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResourceDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path, file name, hash or size",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Folder does not exist or content is not stored",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "409",
+            description = "Resource already exists",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping(value = "/hash", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ResourceDto> uploadResourceByHash(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                            @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest,
+                                                            @Valid @RequestBody HashUploadRequest request
+    ) throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        ResourceDto resource = resourceService.uploadResourceByHash(principle.getId(), pathRequest.getPath(), request.getFileName(),
+                request.getSha256(), request.getSize(), request.getContentType());
+        return ResponseEntity.status(HttpStatus.CREATED).body(resource);
+    }
+
     @Operation(
             summary = "Get resource Info",
             description = "### Return information about target resource",
@@ -263,6 +623,11 @@ public class ResourceController {
                     schema = @Schema(implementation = ResourceDto.class)
             )
     )
+    @ApiResponse(
+            responseCode = "304",
+            description = "Resource was not modified since the version identified by If-None-Match or If-Modified-Since",
+            content = @Content()
+    )
     @ApiResponse(
             responseCode = "400",
             description = "Invalid path",
@@ -289,7 +654,11 @@ public class ResourceController {
                                                        @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest
     ) throws ResourceNotFoundException {
         ResourceDto resourceDto = resourceService.getResourceInfo(principle.getId(), pathRequest.getPath());
-        return ResponseEntity.status(HttpStatus.OK).body(resourceDto);
+        return ResponseEntity.status(HttpStatus.OK)
+                .eTag(resourceDto.getEtag())
+                .lastModified(resourceDto.getLastModified())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(resourceDto);
     }
 
     @Operation(
@@ -0,0 +1,269 @@
+package edu.example.project.controller;
+
+import edu.example.project.dto.PathRequest;
+import edu.example.project.dto.ResourceDto;
+import edu.example.project.dto.ResponseMessage;
+import edu.example.project.dto.UploadSessionDto;
+import edu.example.project.dto.UploadSessionRequest;
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.security.UserDetailsImpl;
+import edu.example.project.service.ResourceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+/**
+ * Resumable upload of big files: a session is created for the file, then chunks are sent with their offsets,
+ * in any order and in parallel, failed chunks are sent again. Session shows which ranges are received
+ */
+@RestController
+@RequestMapping("/resource/uploads")
+@RequiredArgsConstructor
+public class UploadSessionController {
+
+    private final ResourceService resourceService;
+
+    @Operation(
+            summary = "Start resumable upload",
+            description = "### Create upload session of a file in specified directory",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "path",
+                            in = ParameterIn.QUERY,
+                            description = "Path to directory (slash-separated) where to upload",
+                            example = "path/to/",
+                            required = true
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "201",
+            description = "Upload session created",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = UploadSessionDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid path, file name or size",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Folder does not exist",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "409",
+            description = "Resource already exists",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UploadSessionDto> createUploadSession(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                                @Valid @ModelAttribute @Parameter(hidden = true) PathRequest pathRequest,
+                                                                @Valid @RequestBody UploadSessionRequest request
+    ) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        UploadSessionDto session = resourceService.createUploadSession(principle.getId(), pathRequest.getPath(),
+                request.getFileName(), request.getSize(), request.getContentType());
+        return ResponseEntity.status(HttpStatus.CREATED).body(session);
+    }
+
+    @Operation(
+            summary = "Get resumable upload",
+            description = "### Return upload session with received byte ranges",
+            security = @SecurityRequirement(name = "Session-based")
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Upload session found",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = UploadSessionDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Upload session does not exist or expired",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionDto> getUploadSession(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                             @PathVariable("id") String id
+    ) throws ResourceNotFoundException {
+        return ResponseEntity.status(HttpStatus.OK).body(resourceService.getUploadSession(principle.getId(), id));
+    }
+
+    @Operation(
+            summary = "Upload chunk",
+            description = "### Upload chunk of the file starting at offset\n"
+                    + "Offset must be a multiple of session chunk size, every chunk except the last one has exactly chunk size bytes",
+            security = @SecurityRequirement(name = "Session-based"),
+            parameters = {
+                    @Parameter(
+                            name = "offset",
+                            in = ParameterIn.QUERY,
+                            description = "Offset of the first chunk byte in the file",
+                            example = "8388608",
+                            required = true
+                    )
+            }
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Chunk received",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = UploadSessionDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Invalid chunk offset or length",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Upload session does not exist or expired",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PutMapping(value = "/{id}", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<UploadSessionDto> uploadChunk(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                        @PathVariable("id") String id,
+                                                        @RequestParam("offset") long offset,
+                                                        @RequestHeader(HttpHeaders.CONTENT_LENGTH) long length,
+                                                        @Parameter(hidden = true) InputStream content
+    ) throws ResourceNotFoundException {
+        return ResponseEntity.status(HttpStatus.OK).body(resourceService.uploadChunk(principle.getId(), id, offset, length, content));
+    }
+
+    @Operation(
+            summary = "Complete resumable upload",
+            description = "### Assemble the file from received chunks",
+            security = @SecurityRequirement(name = "Session-based")
+    )
+    @ApiResponse(
+            responseCode = "201",
+            description = "Uploaded file",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResourceDto.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "400",
+            description = "Not all chunks are received",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Upload session does not exist or expired",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "409",
+            description = "Resource already exists",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<ResourceDto> completeUploadSession(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                             @PathVariable("id") String id
+    ) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        return ResponseEntity.status(HttpStatus.CREATED).body(resourceService.completeUploadSession(principle.getId(), id));
+    }
+
+    @Operation(
+            summary = "Abort resumable upload",
+            description = "### Discard upload session and received chunks",
+            security = @SecurityRequirement(name = "Session-based")
+    )
+    @ApiResponse(
+            responseCode = "204",
+            description = "Upload session aborted",
+            content = @Content()
+    )
+    @ApiResponse(
+            responseCode = "404",
+            description = "Upload session does not exist or expired",
+            content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = ResponseMessage.class)
+            )
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized",
+            content = @Content()
+    )
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortUploadSession(@AuthenticationPrincipal UserDetailsImpl principle,
+                                                   @PathVariable("id") String id
+    ) throws ResourceNotFoundException {
+        resourceService.abortUploadSession(principle.getId(), id);
+        return ResponseEntity.noContent().build();
+    }
+
+}
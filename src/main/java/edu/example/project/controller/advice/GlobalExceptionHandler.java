@@ -2,8 +2,11 @@ package edu.example.project.controller.advice;
 
 import edu.example.project.dto.ResponseMessage;
 import edu.example.project.exception.BadResourceTypeException;
+import edu.example.project.exception.InvalidCursorException;
+import edu.example.project.exception.InvalidUploadException;
 import edu.example.project.exception.ResourceAlreadyExistsException;
 import edu.example.project.exception.ResourceNotFoundException;
+import jakarta.validation.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -33,6 +36,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<ResponseMessage> handle(ConstraintViolationException ex) {
+        ResponseMessage message = new ResponseMessage();
+        message.setMessage(ex.getConstraintViolations().iterator().next().getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message);
+    }
+
     @ExceptionHandler(MaxUploadSizeExceededException.class)
     public ResponseEntity<ResponseMessage> handle(MaxUploadSizeExceededException ex) {
         ResponseMessage message = new ResponseMessage();
@@ -51,9 +61,24 @@ public class GlobalExceptionHandler {
         return buildErrorResponseMessage(ex, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidUploadException.class)
+    public ResponseEntity<ResponseMessage> handle(InvalidUploadException ex) {
+        return buildErrorResponseMessage(ex, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ResponseMessage> handle(InvalidCursorException ex) {
+        return buildErrorResponseMessage(ex, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(ResourceAlreadyExistsException.class)
     public ResponseEntity<ResponseMessage> handle(ResourceAlreadyExistsException ex) {
-        return buildErrorResponseMessage(ex, HttpStatus.CONFLICT);
+        ResponseMessage message = new ResponseMessage();
+        message.setMessage(ex.getMessage());
+        if (!ex.getConflicts().isEmpty()) {
+            message.setConflicts(ex.getConflicts());
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
     }
 
     @ExceptionHandler(ResourceNotFoundException.class)
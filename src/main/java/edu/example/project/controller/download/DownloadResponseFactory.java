@@ -0,0 +1,282 @@
+package edu.example.project.controller.download;
+
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.service.DownloadableResource;
+import edu.example.project.service.ResourceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds download responses. Files are served with conditional requests (RFC 9110 section 13) and
+ * byte ranges (RFC 9110 section 14) support or redirected to MinIO if presigned redirect is enabled.
+ * Folders are sent as a whole zip archive, unless resumable archives are enabled, then they are served like files.
+ * Compressible files requested without Range are gzipped if the client accepts it, such representation has its own ETag.
+ * Requested ranges are merged, ranges longer than the content together are ignored
+ */
+@Component
+@RequiredArgsConstructor
+public class DownloadResponseFactory {
+
+    private static final String BYTES_UNIT = "bytes";
+
+    private static final String CRLF = "\r\n";
+
+    private static final String ARCHIVE_NAME = "download.zip";
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    /**
+     * Clients may keep files, but have to revalidate them with ETag or Last-Modified before reuse
+     */
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private final ResourceService resourceService;
+
+    private final DownloadProperties downloadProperties;
+
+    private final GzipContentEncoder gzipContentEncoder;
+
+    public ResponseEntity<StreamingResponseBody> createResponse(DownloadableResource resource, ServletWebRequest webRequest) {
+        if (resource.getSize() == null) {
+            return contentResponse(HttpStatus.OK, resource)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(out -> resourceService.writeResourceBinaryContent(resource, out));
+        }
+        String presignedUrl = resource.isFile() && downloadProperties.isPresignedRedirect()
+                ? resourceService.getPresignedDownloadUrl(resource, downloadProperties.getPresignedUrlExpiry())
+                : null;
+        boolean presigned = presignedUrl != null;
+        boolean compressible = !presigned && gzipContentEncoder.isCompressible(resource);
+        boolean gzip = compressible && webRequest.getHeader(HttpHeaders.RANGE) == null
+                && gzipContentEncoder.isAccepted(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? resource.getEtag() + GZIP_ETAG_SUFFIX : resource.getEtag();
+        long lastModified = resource.getLastModified() == null ? -1 : resource.getLastModified().toInstant().toEpochMilli();
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(Objects.requireNonNull(webRequest.getResponse()).getStatus())
+                    .cacheControl(CACHE_CONTROL);
+            if (compressible) {
+                response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+            }
+            return response.build();
+        }
+        if (presigned) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(presignedUrl))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+        long size = resource.getSize();
+        if (gzip) {
+            return contentResponse(HttpStatus.OK, resource)
+                    .header(HttpHeaders.CONTENT_ENCODING, GzipContentEncoder.GZIP)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(gzipContentEncoder.encode(out -> resourceService.writeResourceBinaryContent(resource, out), size));
+        }
+        List<HttpRange> requestedRanges = findRequestedRanges(resource, webRequest);
+        List<ByteRange> ranges = resolveRanges(requestedRanges, size);
+        if (requestedRanges.isEmpty() || totalLength(ranges) > size) {
+            ResponseEntity.BodyBuilder response = contentResponse(HttpStatus.OK, resource);
+            if (compressible) {
+                response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+            }
+            return response.contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(size)
+                    .body(out -> resourceService.writeResourceBinaryContent(resource, out));
+        }
+        ranges = coalesceRanges(ranges);
+        if (ranges.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + size)
+                    .build();
+        }
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return contentResponse(HttpStatus.PARTIAL_CONTENT, resource)
+                    .header(HttpHeaders.CONTENT_RANGE, range.toContentRange(size))
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(range.length())
+                    .body(out -> resourceService.writeResourceBinaryContent(resource, range.start(), range.length(), out));
+        }
+        return multipartRangesResponse(resource, ranges, size);
+    }
+
+    /**
+     * Archive of several resources is generated on the fly, so its size is unknown and ranges are not supported
+     */
+    public ResponseEntity<StreamingResponseBody> createArchiveResponse(List<DownloadableResource> resources) {
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_DISPOSITION, attachment(ARCHIVE_NAME))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(out -> resourceService.writeResourcesZipped(resources, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> multipartRangesResponse(DownloadableResource resource, List<ByteRange> ranges, long size) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>();
+        byte[] closeDelimiter = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        long contentLength = closeDelimiter.length;
+        for (ByteRange range : ranges) {
+            byte[] headers = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(size) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headers);
+            contentLength += headers.length + range.length();
+        }
+        return contentResponse(HttpStatus.PARTIAL_CONTENT, resource)
+                .contentType(new MediaType("multipart", "byteranges", Map.of("boundary", boundary)))
+                .contentLength(contentLength)
+                .body(out -> {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        ByteRange range = ranges.get(i);
+                        out.write(partHeaders.get(i));
+                        resourceService.writeResourceBinaryContent(resource, range.start(), range.length(), out);
+                    }
+                    out.write(closeDelimiter);
+                });
+    }
+
+    /**
+     * Names are quoted and escaped, non-ASCII ones are also given in RFC 5987 encoding
+     */
+    private String attachment(String name) {
+        return ContentDisposition.attachment()
+                .filename(name, StandardCharsets.UTF_8)
+                .build()
+                .toString();
+    }
+
+    /**
+     * ETag and Last-Modified of resources with known size are already written to the response by
+     * {@link ServletWebRequest#checkNotModified(String, long)}
+     */
+    private ResponseEntity.BodyBuilder contentResponse(HttpStatus status, DownloadableResource resource) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .header(HttpHeaders.CONTENT_DISPOSITION, attachment(resource.getName()));
+        if (resource.getSize() != null) {
+            response.header(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT)
+                    .cacheControl(CACHE_CONTROL);
+        }
+        return response;
+    }
+
+    /**
+     * Range header is ignored (whole content is sent) if it is malformed or if If-Range validator does not match
+     */
+    private List<HttpRange> findRequestedRanges(DownloadableResource resource, ServletWebRequest webRequest) {
+        String range = webRequest.getHeader(HttpHeaders.RANGE);
+        if (range == null || !ifRangeMatches(resource, webRequest.getHeader(HttpHeaders.IF_RANGE))) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException exception) {
+            return List.of();
+        }
+    }
+
+    /**
+     * If-Range requires strong comparison, so weak entity tags never match
+     */
+    private boolean ifRangeMatches(DownloadableResource resource, String ifRange) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals("\"" + resource.getEtag() + "\"");
+        }
+        if (ifRange.startsWith("W/") || resource.getLastModified() == null) {
+            return false;
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == resource.getLastModified().toEpochSecond();
+        } catch (DateTimeParseException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Unsatisfiable ranges are dropped, if none is left response is 416
+     */
+    private List<ByteRange> resolveRanges(List<HttpRange> requestedRanges, long size) {
+        List<ByteRange> ranges = new ArrayList<>();
+        for (HttpRange requestedRange : requestedRanges) {
+            try {
+                long start = requestedRange.getRangeStart(size);
+                long end = requestedRange.getRangeEnd(size);
+                if (start <= end) {
+                    ranges.add(new ByteRange(start, end));
+                }
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return ranges;
+    }
+
+    /**
+     * Ranges which together ask for more than the whole content are answered with the whole content once,
+     * so overlapping ranges can't make one request read the content many times
+     */
+    private long totalLength(List<ByteRange> ranges) {
+        long length = 0;
+        for (ByteRange range : ranges) {
+            length += range.length();
+        }
+        return length;
+    }
+
+    /**
+     * Overlapping and adjacent ranges are merged, every part of the response is one read of the content
+     */
+    private List<ByteRange> coalesceRanges(List<ByteRange> ranges) {
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> coalesced = new ArrayList<>();
+        for (ByteRange range : sorted) {
+            ByteRange last = coalesced.isEmpty() ? null : coalesced.getLast();
+            if (last != null && range.start() <= last.end() + 1) {
+                coalesced.set(coalesced.size() - 1, new ByteRange(last.start(), Math.max(last.end(), range.end())));
+            } else {
+                coalesced.add(range);
+            }
+        }
+        return coalesced;
+    }
+
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String toContentRange(long size) {
+            return BYTES_UNIT + " " + start + "-" + end + "/" + size;
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+package edu.example.project.controller.download;
+
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.service.DownloadableResource;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates gzip Content-Encoding of file downloads and compresses content while it is streamed,
+ * so the body is never buffered as a whole
+ */
+@Component
+@RequiredArgsConstructor
+public class GzipContentEncoder {
+
+    public static final String GZIP = "gzip";
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final DownloadProperties downloadProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Whether the response for this file may depend on Accept-Encoding
+     */
+    public boolean isCompressible(DownloadableResource resource) {
+        if (!downloadProperties.isGzipEnabled() || !resource.isFile() || resource.getSize() < downloadProperties.getGzipMinSize()) {
+            return false;
+        }
+        String name = resource.getName();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        if (downloadProperties.getGzipExtensions().contains(extension)) {
+            return true;
+        }
+        MediaType mediaType = resolveMediaType(resource);
+        for (String contentType : downloadProperties.getGzipContentTypes()) {
+            if (MediaType.parseMediaType(contentType).includes(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * gzip is accepted if it is listed in Accept-Encoding with non-zero quality. If it is not listed, "*" decides,
+     * so "gzip;q=0, *" refuses gzip
+     */
+    public boolean isAccepted(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals(GZIP) || name.equals("x-gzip")) {
+                return !isZeroQuality(parameters);
+            }
+            if (name.equals("*")) {
+                wildcard = !isZeroQuality(parameters);
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    /**
+     * Wraps body so that everything it writes is gzipped, compression ratio and CPU time are recorded when it ends
+     */
+    public StreamingResponseBody encode(StreamingResponseBody body, long originalSize) {
+        return out -> {
+            long cpuTimeStart = currentThreadCpuTime();
+            CountingOutputStream countingOut = new CountingOutputStream(out);
+            GZIPOutputStream gzipOut = new LeveledGzipOutputStream(countingOut, downloadProperties.getBufferSize(),
+                    downloadProperties.getGzipLevel());
+            body.writeTo(gzipOut);
+            gzipOut.finish();
+            gzipOut.flush();
+            record(originalSize, countingOut.count, cpuTimeStart);
+        };
+    }
+
+    private MediaType resolveMediaType(DownloadableResource resource) {
+        if (resource.getContentType() != null) {
+            try {
+                MediaType mediaType = MediaType.parseMediaType(resource.getContentType());
+                if (!MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(mediaType)) {
+                    return mediaType;
+                }
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return MediaTypeFactory.getMediaType(resource.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private boolean isZeroQuality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) == 0;
+                } catch (NumberFormatException exception) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void record(long originalBytes, long encodedBytes, long cpuTimeStart) {
+        DistributionSummary.builder("storage.download.gzip.ratio")
+                .description("Encoded size to original size of gzipped downloads")
+                .register(meterRegistry)
+                .record(originalBytes == 0 ? 1 : (double) encodedBytes / originalBytes);
+        DistributionSummary.builder("storage.download.gzip.saved")
+                .description("Bytes saved by gzip per download")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(originalBytes - encodedBytes);
+        long cpuTimeEnd = currentThreadCpuTime();
+        if (cpuTimeStart >= 0 && cpuTimeEnd >= 0) {
+            Timer.builder("storage.download.gzip.cpu")
+                    .description("CPU time of the thread writing gzipped download")
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(cpuTimeEnd - cpuTimeStart));
+        }
+    }
+
+    private static long currentThreadCpuTime() {
+        if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * Deflate level is not a constructor parameter of {@link GZIPOutputStream}, the level of its deflater is set
+     * before anything is compressed
+     */
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        private LeveledGzipOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+}
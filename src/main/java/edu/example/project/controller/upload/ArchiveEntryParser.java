@@ -0,0 +1,208 @@
+package edu.example.project.controller.upload;
+
+import edu.example.project.exception.InvalidUploadException;
+import edu.example.project.service.UploadPart;
+import edu.example.project.validation.PathValidator;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads ZIP, TAR or gzipped TAR archive from request body entry by entry, nothing is spooled locally.
+ * Format is detected from the content. Entry names follow the same rules as request paths, so entries
+ * can't escape the target folder. Entries are limited by the same size as {@link org.springframework.web.multipart.MultipartFile}
+ */
+@Component
+@RequiredArgsConstructor
+public class ArchiveEntryParser {
+
+    private static final int SIGNATURE_LENGTH = 12;
+
+    private final MultipartProperties multipartProperties;
+
+    /**
+     * Folder entries have names ending with "/" and empty content. Links and other special entries are skipped,
+     * content of a file must be read before moving to the next one
+     *
+     * @throws InvalidUploadException if body is not a supported archive or an entry name is invalid
+     */
+    public Iterator<UploadPart> parse(InputStream body) {
+        ArchiveInputStream<? extends ArchiveEntry> archive;
+        try {
+            archive = openArchive(new BufferedInputStream(body));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        long maxEntrySize = multipartProperties.getMaxFileSize().toBytes();
+        return new Iterator<>() {
+
+            private ArchiveEntry next;
+
+            private String nextName;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        ArchiveEntry entry = archive.getNextEntry();
+                        if (entry == null) {
+                            return false;
+                        }
+                        String name = resolveName(entry);
+                        if (isExtracted(entry) && !name.isEmpty()) {
+                            ensureValidName(name);
+                            if (!archive.canReadEntryData(entry)) {
+                                throw new InvalidUploadException("Archive entry can't be read: " + name);
+                            }
+                            next = entry;
+                            nextName = name;
+                        }
+                    }
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+                return true;
+            }
+
+            @Override
+            public UploadPart next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ArchiveEntry entry = next;
+                next = null;
+                if (entry.isDirectory()) {
+                    return new UploadPart(nextName, null, InputStream.nullInputStream());
+                }
+                if (entry.getSize() > maxEntrySize) {
+                    throw new MaxUploadSizeExceededException(maxEntrySize);
+                }
+                return new UploadPart(nextName, null, new SizeLimitedInputStream(archive, maxEntrySize));
+            }
+        };
+    }
+
+    /**
+     * Zip entries may be stored with data descriptor, their size is known only after their content
+     */
+    private ArchiveInputStream<? extends ArchiveEntry> openArchive(BufferedInputStream in) throws IOException {
+        in.mark(SIGNATURE_LENGTH);
+        byte[] signature = in.readNBytes(SIGNATURE_LENGTH);
+        in.reset();
+        if (GzipCompressorInputStream.matches(signature, signature.length)) {
+            return new TarArchiveInputStream(new GzipCompressorInputStream(in));
+        }
+        String format;
+        try {
+            format = ArchiveStreamFactory.detect(in);
+        } catch (ArchiveException exception) {
+            throw new InvalidUploadException("Archive must be ZIP, TAR or gzipped TAR");
+        }
+        return switch (format) {
+            case ArchiveStreamFactory.ZIP -> new ZipArchiveInputStream(in, StandardCharsets.UTF_8.name(), true, true);
+            case ArchiveStreamFactory.TAR -> new TarArchiveInputStream(in);
+            default -> throw new InvalidUploadException("Archive must be ZIP, TAR or gzipped TAR");
+        };
+    }
+
+    private boolean isExtracted(ArchiveEntry entry) {
+        if (entry instanceof TarArchiveEntry tarEntry) {
+            return tarEntry.isFile() || tarEntry.isDirectory();
+        }
+        if (entry instanceof ZipArchiveEntry zipEntry) {
+            return !zipEntry.isUnixSymlink();
+        }
+        return true;
+    }
+
+    /**
+     * Archives made of the current directory prefix names with "./", it is dropped.
+     * Folder names always end with "/", tar doesn't guarantee it
+     */
+    private String resolveName(ArchiveEntry entry) {
+        String name = entry.getName();
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        if (entry.isDirectory() && !name.isEmpty() && !name.endsWith("/")) {
+            name += "/";
+        }
+        return name;
+    }
+
+    /**
+     * Absolute names, "." and ".." segments are rejected, entries are always extracted inside the target folder
+     */
+    private void ensureValidName(String name) {
+        if (name.startsWith("/") || name.contains("/./") || name.endsWith("/.") || name.equals(".")
+                || !PathValidator.isValidPath(name)) {
+            throw new InvalidUploadException("Invalid archive entry name: " + name);
+        }
+    }
+
+    /**
+     * Size of zip entries with data descriptor is unknown upfront, so it is checked while they are read.
+     * Closing does not close the archive, next entries are read from it
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long maxSize;
+
+        private long read;
+
+        private SizeLimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > maxSize) {
+                throw new MaxUploadSizeExceededException(maxSize);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package edu.example.project.controller.upload;
+
+import edu.example.project.dto.PathRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Binds path from query string without touching request parameters, for requests whose body is read as a stream
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryPathRequestReader {
+
+    private final Validator validator;
+
+    /**
+     * @throws ConstraintViolationException if path is missing or invalid
+     */
+    public PathRequest read(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String path = query == null ? null : UriComponentsBuilder.newInstance()
+                .query(query)
+                .build()
+                .getQueryParams()
+                .getFirst("path");
+        PathRequest pathRequest = new PathRequest();
+        pathRequest.setPath(path == null ? null : UriUtils.decode(path.replace("+", " "), StandardCharsets.UTF_8));
+        Set<ConstraintViolation<PathRequest>> violations = validator.validate(pathRequest);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return pathRequest;
+    }
+
+}
@@ -0,0 +1,118 @@
+package edu.example.project.controller.upload;
+
+import edu.example.project.service.UploadPart;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads multipart/form-data request body part by part, content of every file is read straight from the request.
+ * Request parameters must not be accessed before, servlet container would parse and spool the whole body then.
+ * Size limits are the same as for {@link org.springframework.web.multipart.MultipartFile} uploads
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamingMultipartParser {
+
+    private final MultipartProperties multipartProperties;
+
+    /**
+     * Form fields are skipped, content of a file must be read before moving to the next one
+     */
+    public Iterator<UploadPart> parse(HttpServletRequest request) {
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setFileSizeMax(multipartProperties.getMaxFileSize().toBytes());
+        upload.setSizeMax(multipartProperties.getMaxRequestSize().toBytes());
+        FileItemInputIterator items;
+        try {
+            items = upload.getItemIterator(request);
+        } catch (IOException exception) {
+            throw translate(exception);
+        }
+        return new Iterator<>() {
+
+            private FileItemInput next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && items.hasNext()) {
+                        FileItemInput item = items.next();
+                        if (!item.isFormField() && item.getName() != null && !item.getName().isEmpty()) {
+                            next = item;
+                        }
+                    }
+                } catch (IOException exception) {
+                    throw translate(exception);
+                }
+                return next != null;
+            }
+
+            @Override
+            public UploadPart next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                FileItemInput item = next;
+                next = null;
+                try {
+                    return new UploadPart(item.getName(), item.getContentType(), new LimitTranslatingInputStream(item.getInputStream()));
+                } catch (IOException exception) {
+                    throw translate(exception);
+                }
+            }
+        };
+    }
+
+    private RuntimeException translate(IOException exception) {
+        if (exception instanceof FileUploadSizeException sizeException) {
+            return new MaxUploadSizeExceededException(sizeException.getPermitted(), sizeException);
+        }
+        return new UncheckedIOException(exception);
+    }
+
+    /**
+     * Size limits are checked while file content is read, so they are reported by the stream itself
+     */
+    private class LimitTranslatingInputStream extends FilterInputStream {
+
+        private LimitTranslatingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (FileUploadSizeException exception) {
+                throw translate(exception);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (FileUploadSizeException exception) {
+                throw translate(exception);
+            }
+        }
+
+    }
+
+}
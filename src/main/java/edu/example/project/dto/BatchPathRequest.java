@@ -0,0 +1,46 @@
+package edu.example.project.dto;
+
+import edu.example.project.validation.ValidPath;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Setter removes leading slash of every path
+ */
+@Getter
+@NoArgsConstructor
+public class BatchPathRequest {
+
+    private static final int MAXIMUM_PATHS_NUMBER = 1000;
+
+    private static final String PATHS_EMPTY = "Paths must not be empty";
+
+    private static final String PATHS_INVALID_SIZE = "No more than 1000 paths allowed";
+
+    private static final String PATH_NULL = "Path must not be null";
+
+    @ArraySchema(
+            schema = @Schema(description = "Absolute path to file or folder (slash-separated)", example = "path/to/file.txt")
+    )
+    @NotEmpty(message = PATHS_EMPTY)
+    @Size(max = MAXIMUM_PATHS_NUMBER, message = PATHS_INVALID_SIZE)
+    private List<@NotNull(message = PATH_NULL) @ValidPath String> paths;
+
+    /**
+     * Used by Jackson during request body deserialization
+     */
+    @SuppressWarnings("unused")
+    public void setPaths(List<String> paths) {
+        this.paths = paths == null ? null : paths.stream()
+                .map(path -> path == null ? null : path.replaceAll("^/+", ""))
+                .toList();
+    }
+
+}
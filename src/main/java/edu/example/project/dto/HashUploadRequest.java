@@ -0,0 +1,34 @@
+package edu.example.project.dto;
+
+import edu.example.project.validation.ValidPath;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class HashUploadRequest {
+
+    @Schema(description = "file name, may contain path of the file inside uploaded folder", example = "file.txt")
+    @NotBlank(message = "File name must not be blank")
+    @ValidPath
+    private String fileName;
+
+    @Schema(description = "SHA-256 of file content, lowercase hex", example = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855")
+    @NotNull(message = "Hash must not be null")
+    @Pattern(regexp = "^[0-9a-f]{64}$", message = "Hash must be SHA-256 in lowercase hex")
+    private String sha256;
+
+    @Schema(description = "file size", example = "123456789")
+    @NotNull(message = "File size must not be null")
+    @PositiveOrZero(message = "File size must not be negative")
+    private Long size;
+
+    @Schema(description = "content type of the file", example = "text/plain")
+    private String contentType;
+
+}
@@ -1,9 +1,12 @@
 package edu.example.project.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 
+import java.time.ZonedDateTime;
+
 @Getter
 @Setter
 public class ResourceDto {
@@ -14,11 +17,28 @@ public class ResourceDto {
     @Schema(description = "resource name", example = "file.txt")
     private String name;
 
-    @Schema(description = "resource size (not required if resource is folder)", example = "123")
+    @Schema(description = "resource size, for folder size of all files inside it (absent if not known yet)", example = "123")
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long size;
 
+    @Schema(description = "number of all files inside folder (absent for files and if not known yet)", example = "42")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long fileCount;
+
+    @Schema(description = "latest modification time of files inside folder (absent for files, empty folders and if not known yet)")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ZonedDateTime contentModified;
+
     @Schema(description = "resource type", example = "FILE")
     private String type;
 
+    /**
+     * Validators of stored object, sent as ETag and Last-Modified headers instead of body fields
+     */
+    @JsonIgnore
+    private String etag;
+
+    @JsonIgnore
+    private ZonedDateTime lastModified;
+
 }
@@ -0,0 +1,20 @@
+package edu.example.project.dto;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class ResourcePageDto {
+
+    @ArraySchema(schema = @Schema(implementation = ResourceDto.class, description = "folder content in byte order of names"))
+    private List<ResourceDto> items;
+
+    @Schema(description = "cursor of the next page, absent on the last page", example = "ZmlsZS50eHQ")
+    private String nextCursor;
+
+}
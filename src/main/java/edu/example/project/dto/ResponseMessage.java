@@ -24,6 +24,12 @@ public class ResponseMessage {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<String> violations;
 
+    @ArraySchema(
+            schema = @Schema(description = "Optional field, sends only if uploaded resources already exist, names are relative to upload folder", example = "file.txt")
+    )
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> conflicts;
+
     public ResponseMessage(String message) {
         this.message = message;
     }
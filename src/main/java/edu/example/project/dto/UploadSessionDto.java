@@ -0,0 +1,48 @@
+package edu.example.project.dto;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+public class UploadSessionDto {
+
+    @Schema(description = "upload session id", example = "3f2b8c1e-6a0d-4f3e-9b7a-2c5d8e1f0a4b")
+    private String id;
+
+    @Schema(description = "path to parent folder of the uploaded file", example = "path/to/")
+    private String path;
+
+    @Schema(description = "uploaded file name", example = "file.txt")
+    private String name;
+
+    @Schema(description = "file size", example = "123456789")
+    private long size;
+
+    @Schema(description = "size of every chunk except the last one, chunk offsets are multiples of it", example = "8388608")
+    private long chunkSize;
+
+    @ArraySchema(schema = @Schema(description = "received byte ranges"))
+    private List<ByteRange> received;
+
+    @Schema(description = "session expires if no chunk is received before this time")
+    private Instant expiresAt;
+
+    @Getter
+    @Setter
+    public static class ByteRange {
+
+        @Schema(description = "offset of the first byte", example = "0")
+        private long start;
+
+        @Schema(description = "offset of the last byte", example = "8388607")
+        private long end;
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package edu.example.project.dto;
+
+import edu.example.project.validation.ValidPath;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class UploadSessionRequest {
+
+    @Schema(description = "file name, may contain path of the file inside uploaded folder", example = "file.txt")
+    @NotBlank(message = "File name must not be blank")
+    @ValidPath
+    private String fileName;
+
+    @Schema(description = "file size", example = "123456789")
+    @NotNull(message = "File size must not be null")
+    @Positive(message = "File size must be positive")
+    private Long size;
+
+    @Schema(description = "content type of the file", example = "text/plain")
+    private String contentType;
+
+}
@@ -1,8 +1,24 @@
 package edu.example.project.exception;
 
+import java.util.List;
+
 public class ResourceAlreadyExistsException extends Exception {
 
+    private final List<String> conflicts;
+
     public ResourceAlreadyExistsException(String message) {
+        this(message, List.of());
+    }
+
+    /**
+     * @param conflicts names of existing resources, relative to the folder where they were going to be written
+     */
+    public ResourceAlreadyExistsException(String message, List<String> conflicts) {
         super(message);
+        this.conflicts = conflicts;
+    }
+
+    public List<String> getConflicts() {
+        return conflicts;
     }
 }
@@ -0,0 +1,33 @@
+package edu.example.project.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Content object stored once under its SHA-256, referenced by every user path with the same content
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "content_blobs")
+public class ContentBlob {
+
+    @Id
+    @Column(name = "hash")
+    private String hash;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    /**
+     * False while the content object is being written by the first uploaders of the content
+     */
+    @Column(name = "stored", nullable = false)
+    private boolean stored;
+
+}
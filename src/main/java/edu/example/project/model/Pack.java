@@ -0,0 +1,43 @@
+package edu.example.project.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Object holding content of several small files one after another
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "packs")
+public class Pack {
+
+    @Id
+    @Column(name = "object_key")
+    private String objectKey;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    /**
+     * Bytes of files which are still referenced, the rest of the pack is dead
+     */
+    @Column(name = "live_bytes", nullable = false)
+    private Long liveBytes;
+
+    /**
+     * Set when files were moved to another pack, the object is removed some time later
+     */
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+
+    public Pack(String objectKey, Long size) {
+        this.objectKey = objectKey;
+        this.size = size;
+        this.liveBytes = size;
+    }
+}
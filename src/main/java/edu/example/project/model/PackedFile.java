@@ -0,0 +1,44 @@
+package edu.example.project.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * File stored as a byte range of a pack instead of its own object
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "packed_files")
+public class PackedFile {
+
+    /**
+     * Object key the file would have if it was not packed
+     */
+    @Id
+    @Column(name = "path")
+    private String path;
+
+    @Column(name = "pack_key", nullable = false)
+    private String packKey;
+
+    @Column(name = "content_offset", nullable = false)
+    private Long offset;
+
+    @Column(name = "content_length", nullable = false)
+    private Long length;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "etag", nullable = false)
+    private String etag;
+
+    @Column(name = "last_modified", nullable = false)
+    private Instant lastModified;
+
+}
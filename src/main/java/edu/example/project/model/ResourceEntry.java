@@ -0,0 +1,103 @@
+package edu.example.project.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Indexed metadata of a file or folder of a user. Paths are relative to the user root folder,
+ * folder names end with "/", the root folder itself has empty parent path and name
+ */
+@Entity
+@NoArgsConstructor
+@Getter @Setter
+@Table(name = "resources")
+@IdClass(ResourceEntry.Key.class)
+public class ResourceEntry {
+
+    public static final String FILE = "FILE";
+
+    public static final String DIRECTORY = "DIRECTORY";
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "parent_path")
+    private String parentPath;
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "type", nullable = false)
+    private String type;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Column(name = "etag")
+    private String etag;
+
+    /**
+     * Null if the file was indexed from a listing, which has no content types
+     */
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "last_modified", nullable = false)
+    private Instant lastModified;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /**
+     * Every child of the folder is indexed, so a child which is not indexed does not exist
+     */
+    @Column(name = "listed", nullable = false)
+    private boolean listed;
+
+    /**
+     * Size of all files inside the folder, null if unknown
+     */
+    @Column(name = "total_size")
+    private Long totalSize;
+
+    /**
+     * Number of all files inside the folder, null if unknown
+     */
+    @Column(name = "file_count")
+    private Long fileCount;
+
+    /**
+     * The latest modification time of files inside the folder, null if it has none or it is unknown
+     */
+    @Column(name = "content_modified")
+    private Instant contentModified;
+
+    public boolean isFile() {
+        return FILE.equals(type);
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private Long userId;
+
+        private String parentPath;
+
+        private String name;
+
+    }
+
+}
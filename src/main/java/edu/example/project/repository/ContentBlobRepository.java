@@ -0,0 +1,74 @@
+package edu.example.project.repository;
+
+import edu.example.project.model.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Reference counts are changed by single statements, each in its own short transaction. Count -1 marks
+ * content which is being removed from MinIO, it can't be referenced until its row is gone. Content is written
+ * only by holders of a reference, so a row being written always has a positive count
+ */
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    /**
+     * Reference is counted before the content object is written, so the content can't be removed in between.
+     * A new row is not stored until {@link #markStored(String)}
+     *
+     * @return whether the content is stored, null if it is being removed
+     */
+    @Transactional
+    @Query(value = "INSERT INTO content_blobs (hash, size, ref_count, stored) VALUES (:hash, :size, 1, false) "
+            + "ON CONFLICT (hash) DO UPDATE SET ref_count = content_blobs.ref_count + 1 "
+            + "WHERE content_blobs.ref_count >= 0 RETURNING stored",
+            nativeQuery = true)
+    Boolean reserve(@Param("hash") String hash, @Param("size") long size);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.stored = true WHERE b.hash = :hash")
+    int markStored(@Param("hash") String hash);
+
+    /**
+     * Only stored content with references is known to stay stored
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount + 1 "
+            + "WHERE b.hash = :hash AND b.size = :size AND b.refCount > 0 AND b.stored = true")
+    int incrementIfReferenced(@Param("hash") String hash, @Param("size") long size);
+
+    /**
+     * @return reference count after decrement, null if the content is not known
+     */
+    @Transactional
+    @Query(value = "UPDATE content_blobs SET ref_count = ref_count - 1 WHERE hash = :hash AND ref_count > 0 RETURNING ref_count",
+            nativeQuery = true)
+    Long decrement(@Param("hash") String hash);
+
+    /**
+     * Marks content without references as being removed, content left marked by an interrupted removal is taken again
+     *
+     * @return hashes of the marked content
+     */
+    @Transactional
+    @Query(value = "UPDATE content_blobs SET ref_count = -1 WHERE hash IN ("
+            + "SELECT hash FROM content_blobs WHERE ref_count <= 0 LIMIT :limit FOR UPDATE SKIP LOCKED"
+            + ") RETURNING hash",
+            nativeQuery = true)
+    List<String> claimUnreferenced(@Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ContentBlob b WHERE b.hash = :hash AND b.refCount < 0")
+    int deleteClaimed(@Param("hash") String hash);
+
+    @Query("SELECT count(b) > 0 FROM ContentBlob b WHERE b.hash = :hash AND b.refCount < 0")
+    boolean isClaimed(@Param("hash") String hash);
+
+}
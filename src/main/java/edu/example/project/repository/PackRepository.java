@@ -0,0 +1,32 @@
+package edu.example.project.repository;
+
+import edu.example.project.model.Pack;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface PackRepository extends JpaRepository<Pack, String> {
+
+    /**
+     * Changes of pack files lock their pack, so they don't interleave with its compaction
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Pack p WHERE p.objectKey = :objectKey")
+    Optional<Pack> findForUpdate(@Param("objectKey") String objectKey);
+
+    /**
+     * Packs with few live bytes or without files at all, packs of empty files only are left as they are
+     */
+    @Query("SELECT p FROM Pack p WHERE p.retiredAt IS NULL AND (p.size > 0 AND p.liveBytes <= p.size * :liveRatio "
+            + "OR NOT EXISTS (SELECT f FROM PackedFile f WHERE f.packKey = p.objectKey))")
+    List<Pack> findSparse(@Param("liveRatio") double liveRatio);
+
+    List<Pack> findByRetiredAtBefore(Instant time);
+
+}
@@ -0,0 +1,36 @@
+package edu.example.project.repository;
+
+import edu.example.project.model.PackedFile;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Locking queries lock files before their packs, compaction does the same, so they can't deadlock
+ */
+public interface PackedFileRepository extends JpaRepository<PackedFile, String> {
+
+    /**
+     * Paths are compared in byte order, the same as keys of MinIO listings
+     */
+    @Query(value = "SELECT * FROM packed_files WHERE path > :after AND path < :end ORDER BY path LIMIT :limit",
+            nativeQuery = true)
+    List<PackedFile> findPage(@Param("after") String after, @Param("end") String end, @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<PackedFile> findLockedByPath(String path);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PackedFile> findLockedByPathStartingWithOrderByPath(String prefix);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PackedFile> findLockedByPackKey(String packKey);
+
+    List<PackedFile> findByPackKeyOrderByOffset(String packKey);
+
+}
@@ -0,0 +1,77 @@
+package edu.example.project.repository;
+
+import edu.example.project.model.ResourceEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Paths are compared in byte order, so "parent_path >= 'a/' AND parent_path < 'a0'" selects everything
+ * inside folder "a/" with one range scan of the primary key
+ */
+public interface ResourceEntryRepository extends JpaRepository<ResourceEntry, ResourceEntry.Key> {
+
+    /**
+     * Searched form of names, it is indexed together with user_id by the trigram index of changelog-1.6
+     */
+    String SEARCH_NAME = "lower(rtrim(name, '/') COLLATE \"default\")";
+
+    List<ResourceEntry> findByUserIdAndParentPathOrderByName(Long userId, String parentPath);
+
+    /**
+     * Keyset page of folder children, the folder itself has empty name and is never after anything
+     */
+    @Query(value = "SELECT * FROM resources WHERE user_id = :userId AND parent_path = :parentPath AND name > :after "
+            + "ORDER BY name LIMIT :limit", nativeQuery = true)
+    List<ResourceEntry> findPage(@Param("userId") Long userId, @Param("parentPath") String parentPath,
+                                 @Param("after") String after, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM ResourceEntry r WHERE r.userId = :userId AND r.parentPath >= :from AND r.parentPath < :to")
+    void deleteByParentPathRange(@Param("userId") Long userId, @Param("from") String from, @Param("to") String to);
+
+    @Modifying
+    @Query("DELETE FROM ResourceEntry r WHERE r.userId = :userId")
+    void deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE resources SET parent_path = :toParent, name = :toName, last_modified = :time "
+            + "WHERE user_id = :userId AND parent_path = :fromParent AND name = :fromName", nativeQuery = true)
+    void rename(@Param("userId") Long userId, @Param("fromParent") String fromParent, @Param("fromName") String fromName,
+                @Param("toParent") String toParent, @Param("toName") String toName, @Param("time") Instant time);
+
+    @Modifying
+    @Query(value = "UPDATE resources SET parent_path = :to || substr(parent_path, length(:from) + 1), last_modified = :time "
+            + "WHERE user_id = :userId AND parent_path >= :from AND parent_path < :fromEnd", nativeQuery = true)
+    void moveParentPathRange(@Param("userId") Long userId, @Param("from") String from, @Param("fromEnd") String fromEnd,
+                             @Param("to") String to, @Param("time") Instant time);
+
+    @Query("SELECT DISTINCT r.userId FROM ResourceEntry r")
+    List<Long> findUserIds();
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM resources WHERE user_id = :userId AND type = 'DIRECTORY' AND NOT listed)",
+            nativeQuery = true)
+    boolean existsUnlistedFolder(@Param("userId") Long userId);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM resources WHERE user_id = :userId AND type = 'FILE' AND etag = :etag AND size = :size)",
+            nativeQuery = true)
+    boolean existsFile(@Param("userId") Long userId, @Param("etag") String etag, @Param("size") long size);
+
+    /**
+     * Exact matches go first, then names starting with the query, then names containing it.
+     * Within each group names more similar to the query and shorter ones go first
+     *
+     * @param pattern LIKE pattern of names containing the query
+     * @param prefixPattern LIKE pattern of names starting with the query
+     */
+    @Query(value = "SELECT * FROM resources WHERE user_id = :userId AND name <> '' AND " + SEARCH_NAME + " LIKE :pattern "
+            + "ORDER BY CASE WHEN " + SEARCH_NAME + " = :query THEN 0 WHEN " + SEARCH_NAME + " LIKE :prefixPattern THEN 1 ELSE 2 END, "
+            + "similarity(" + SEARCH_NAME + ", :query) DESC, length(name), parent_path, name LIMIT :limit", nativeQuery = true)
+    List<ResourceEntry> search(@Param("userId") Long userId, @Param("query") String query, @Param("pattern") String pattern,
+                               @Param("prefixPattern") String prefixPattern, @Param("limit") int limit);
+
+}
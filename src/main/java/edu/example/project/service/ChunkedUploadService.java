@@ -0,0 +1,198 @@
+package edu.example.project.service;
+
+import edu.example.project.config.UploadProperties;
+import edu.example.project.exception.InvalidUploadException;
+import edu.example.project.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resumable uploads on top of MinIO multipart uploads. Session state is kept in Redis, so chunks of one upload
+ * may be received by different application nodes and in parallel. Sessions without new chunks expire,
+ * their multipart uploads are aborted by a scheduled cleanup
+ */
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final String SESSION_KEY_PREFIX = "upload-session:";
+
+    private static final String PARTS_KEY_SUFFIX = ":parts";
+
+    /**
+     * Sorted set of session ids scored by their expiration time
+     */
+    private static final String EXPIRATIONS_KEY = "upload-sessions:expirations";
+
+    private static final int MAX_PARTS = 10_000;
+
+    private static final long MIN_CHUNK_SIZE = 5 * 1024 * 1024;
+
+    private static final long CHUNK_SIZE_ALIGNMENT = 1024 * 1024;
+
+    private final MinioService minioService;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final UploadProperties uploadProperties;
+
+    protected UploadSession createSession(Long userId, String folder, String objectKey, long size, String contentType) {
+        if (size <= 0 || size > uploadProperties.getMaxResumableFileSize()) {
+            throw new InvalidUploadException("File size must be between 1 and " + uploadProperties.getMaxResumableFileSize() + " bytes");
+        }
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setFolder(folder);
+        session.setObjectKey(objectKey);
+        session.setSize(size);
+        session.setChunkSize(resolveChunkSize(size));
+        session.setContentType(contentType);
+        session.setUploadId(minioService.createMultipartUpload(objectKey, contentType));
+        session.setExpiresAt(Instant.now().plus(uploadProperties.getSessionTtl()));
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("userId", userId.toString());
+        fields.put("folder", folder);
+        fields.put("objectKey", objectKey);
+        fields.put("uploadId", session.getUploadId());
+        fields.put("size", Long.toString(size));
+        fields.put("chunkSize", Long.toString(session.getChunkSize()));
+        fields.put("contentType", contentType);
+        redisTemplate.opsForHash().putAll(sessionKey(session.getId()), fields);
+        touch(session);
+        return session;
+    }
+
+    /**
+     * Sessions of other users are not found. Expired session is not found either, even before cleanup aborts it,
+     * as its multipart upload may be aborted at any moment
+     */
+    protected UploadSession findSession(Long userId, String id) throws ResourceNotFoundException {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(sessionKey(id));
+        if (fields.isEmpty() || !userId.toString().equals(fields.get("userId"))) {
+            throw new ResourceNotFoundException("Upload session not found", null);
+        }
+        Double expiresAt = redisTemplate.opsForZSet().score(EXPIRATIONS_KEY, id);
+        if (expiresAt == null || expiresAt.longValue() <= Instant.now().toEpochMilli()) {
+            throw new ResourceNotFoundException("Upload session expired", null);
+        }
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setUserId(userId);
+        session.setFolder((String) fields.get("folder"));
+        session.setObjectKey((String) fields.get("objectKey"));
+        session.setUploadId((String) fields.get("uploadId"));
+        session.setSize(Long.parseLong((String) fields.get("size")));
+        session.setChunkSize(Long.parseLong((String) fields.get("chunkSize")));
+        session.setContentType((String) fields.get("contentType"));
+        session.setExpiresAt(Instant.ofEpochMilli(expiresAt.longValue()));
+        redisTemplate.<String, String>opsForHash().entries(partsKey(id))
+                .forEach((partNumber, etag) -> session.getPartEtags().put(Integer.valueOf(partNumber), etag));
+        return session;
+    }
+
+    /**
+     * Chunk may be sent again, the last received copy wins
+     */
+    protected void uploadChunk(UploadSession session, long offset, long length, InputStream content) {
+        if (offset < 0 || offset >= session.getSize() || offset % session.getChunkSize() != 0) {
+            throw new InvalidUploadException("Chunk offset must be a multiple of " + session.getChunkSize() + " less than file size");
+        }
+        long expectedLength = Math.min(session.getChunkSize(), session.getSize() - offset);
+        if (length != expectedLength) {
+            throw new InvalidUploadException("Chunk at offset " + offset + " must have " + expectedLength + " bytes");
+        }
+        int partNumber = (int) (offset / session.getChunkSize()) + 1;
+        String etag = minioService.uploadPart(session.getObjectKey(), session.getUploadId(), partNumber, content, length);
+        redisTemplate.opsForHash().put(partsKey(session.getId()), Integer.toString(partNumber), etag);
+        session.getPartEtags().put(partNumber, etag);
+        touch(session);
+    }
+
+    protected WrittenObject completeSession(UploadSession session) {
+        if (!session.isComplete()) {
+            throw new InvalidUploadException("Upload is incomplete: " + session.getPartEtags().size() + " of "
+                    + session.getChunkCount() + " chunks received");
+        }
+        WrittenObject written = minioService.completeMultipartUpload(session.getObjectKey(), session.getUploadId(),
+                session.getPartEtags(), session.getSize());
+        removeSession(session.getId());
+        return written;
+    }
+
+    protected void abortSession(UploadSession session) {
+        minioService.abortMultipartUpload(session.getObjectKey(), session.getUploadId());
+        removeSession(session.getId());
+    }
+
+    /**
+     * Expired session is claimed by removing it from the expiration set, so only one node aborts it
+     */
+    @Scheduled(initialDelayString = "${storage.upload.session-cleanup-interval}",
+            fixedDelayString = "${storage.upload.session-cleanup-interval}")
+    public void abortExpiredSessions() {
+        Set<String> expiredIds = redisTemplate.opsForZSet().rangeByScore(EXPIRATIONS_KEY, 0, Instant.now().toEpochMilli());
+        if (expiredIds == null) {
+            return;
+        }
+        for (String id : expiredIds) {
+            Long removed = redisTemplate.opsForZSet().remove(EXPIRATIONS_KEY, id);
+            if (removed == null || removed == 0) {
+                continue;
+            }
+            List<String> fields = redisTemplate.<String, String>opsForHash().multiGet(sessionKey(id), List.of("objectKey", "uploadId"));
+            if (fields.get(0) != null && fields.get(1) != null) {
+                minioService.abortMultipartUpload(fields.get(0), fields.get(1));
+            }
+            redisTemplate.delete(List.of(sessionKey(id), partsKey(id)));
+        }
+    }
+
+    /**
+     * Chunk count is limited by MinIO part count
+     */
+    private long resolveChunkSize(long size) {
+        long chunkSize = Math.max(uploadProperties.getChunkSize(), MIN_CHUNK_SIZE);
+        long requiredChunkSize = (size + MAX_PARTS - 1) / MAX_PARTS;
+        if (requiredChunkSize > chunkSize) {
+            chunkSize = (requiredChunkSize + CHUNK_SIZE_ALIGNMENT - 1) / CHUNK_SIZE_ALIGNMENT * CHUNK_SIZE_ALIGNMENT;
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Prolongs the session. Keys expire in Redis as well, later than the session, in case cleanup did not run
+     */
+    private void touch(UploadSession session) {
+        Instant expiresAt = Instant.now().plus(uploadProperties.getSessionTtl());
+        session.setExpiresAt(expiresAt);
+        redisTemplate.opsForZSet().add(EXPIRATIONS_KEY, session.getId(), expiresAt.toEpochMilli());
+        redisTemplate.expire(sessionKey(session.getId()), uploadProperties.getSessionTtl().multipliedBy(2));
+        redisTemplate.expire(partsKey(session.getId()), uploadProperties.getSessionTtl().multipliedBy(2));
+    }
+
+    private void removeSession(String id) {
+        redisTemplate.opsForZSet().remove(EXPIRATIONS_KEY, id);
+        redisTemplate.delete(List.of(sessionKey(id), partsKey(id)));
+    }
+
+    private String sessionKey(String id) {
+        return SESSION_KEY_PREFIX + id;
+    }
+
+    private String partsKey(String id) {
+        return SESSION_KEY_PREFIX + id + PARTS_KEY_SUFFIX;
+    }
+
+}
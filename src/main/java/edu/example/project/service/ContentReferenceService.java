@@ -0,0 +1,96 @@
+package edu.example.project.service;
+
+import edu.example.project.repository.ContentBlobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Keeps reference counts of content objects. New content is counted before it is written and marked stored
+ * afterwards, content which lost its last reference is removed later, after its row is marked as being removed.
+ * MinIO is never called while a row is locked
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentReferenceService {
+
+    private static final Duration REMOVAL_POLL_INTERVAL = Duration.ofMillis(50);
+
+    private static final Duration REMOVAL_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ContentBlobRepository contentBlobRepository;
+
+    /**
+     * Reference is counted before the content object is written, so the sweep can't remove content which is
+     * being written. Content which is being removed is written again once the removal is over
+     *
+     * @param upload writes the content object, called only if the content is not stored yet. Uploads of
+     *               the same new content may run concurrently, they write the same bytes
+     */
+    protected void addReference(String hash, long size, Runnable upload) {
+        if (addReferenceIfStored(hash, size)) {
+            return;
+        }
+        Instant deadline = Instant.now().plus(REMOVAL_TIMEOUT);
+        Boolean stored;
+        while ((stored = contentBlobRepository.reserve(hash, size)) == null) {
+            awaitRemoval(hash, deadline);
+        }
+        if (stored) {
+            return;
+        }
+        try {
+            upload.run();
+        } catch (RuntimeException exception) {
+            removeReference(hash);
+            throw exception;
+        }
+        contentBlobRepository.markStored(hash);
+    }
+
+    /**
+     * @return false if the content is not stored, then nothing is referenced
+     */
+    protected boolean addReferenceIfStored(String hash, long size) {
+        return contentBlobRepository.incrementIfReferenced(hash, size) > 0;
+    }
+
+    /**
+     * Content object is not removed here, see {@link #claimUnreferenced(int)}
+     */
+    protected void removeReference(String hash) {
+        contentBlobRepository.decrement(hash);
+    }
+
+    /**
+     * @return hashes of content without references, it can't be referenced until {@link #forgetClaimed(String)}
+     */
+    protected List<String> claimUnreferenced(int limit) {
+        return contentBlobRepository.claimUnreferenced(limit);
+    }
+
+    /**
+     * Called once the content object is removed from MinIO
+     */
+    protected void forgetClaimed(String hash) {
+        contentBlobRepository.deleteClaimed(hash);
+    }
+
+    private void awaitRemoval(String hash, Instant deadline) {
+        while (contentBlobRepository.isClaimed(hash)) {
+            if (Instant.now().isAfter(deadline)) {
+                throw new IllegalStateException("Content " + hash + " is still being removed");
+            }
+            try {
+                Thread.sleep(REMOVAL_POLL_INTERVAL);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(exception);
+            }
+        }
+    }
+
+}
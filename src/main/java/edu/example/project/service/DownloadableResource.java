@@ -0,0 +1,42 @@
+package edu.example.project.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Resource resolved against user root folder and ready to be streamed to the client
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+public class DownloadableResource {
+
+    @Getter(AccessLevel.PACKAGE)
+    private String objectKey;
+
+    private String name;
+
+    /**
+     * null for zipped folders, archive size is unknown until it is written, unless the archive is resumable
+     */
+    private Long size;
+
+    private String etag;
+
+    private ZonedDateTime lastModified;
+
+    private String contentType;
+
+    /**
+     * Laid out archive of the folder if resumable archives are enabled
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private ResumableZipArchiver.Archive archive;
+
+    public boolean isFile() {
+        return !objectKey.endsWith("/");
+    }
+
+}
@@ -3,7 +3,6 @@ package edu.example.project.service;
 import edu.example.project.dto.ResourceDto;
 import edu.example.project.exception.BadResourceTypeException;
 import edu.example.project.exception.ResourceAlreadyExistsException;
-import edu.example.project.exception.ResourceNotFoundException;
 import io.minio.StatObjectResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -12,8 +11,11 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -23,24 +25,31 @@ public class FileService implements PathResolverService {
 
     private final MinioService minioService;
 
-    protected void moveFile(String from, String to) {
+    /**
+     * @return the copy written to the new path, empty if the path is the same
+     */
+    protected List<WrittenObject> moveFile(String from, String to) {
         if (from.equals(to)) {
-            return;
-        }
-        minioService.copyObject(from, to);
-        try {
-            minioService.statObject(to);
-        } catch (ResourceNotFoundException exception) {
-            throw new RuntimeException("Copy failed", exception);
+            return List.of();
         }
+        WrittenObject copy = minioService.copyObject(from, to);
         minioService.removeObject(from);
+        return List.of(copy);
     }
 
-    protected byte[] getFileBinaryContent(String path) throws IOException {
+    protected void writeFileBinaryContent(String path, OutputStream out) throws IOException {
         ensureFilePath(path);
-        try (InputStream objectIn = minioService.getObject(path)) {
-            return objectIn.readAllBytes();
-        }
+        minioService.writeObject(path, out);
+    }
+
+    protected String getPresignedDownloadUrl(String path, String fileName, Duration expiry) {
+        ensureFilePath(path);
+        return minioService.getPresignedDownloadUrl(path, fileName, expiry);
+    }
+
+    protected void writeFileBinaryContent(String path, long offset, long length, OutputStream out) throws IOException {
+        ensureFilePath(path);
+        minioService.writeObject(path, offset, length, out);
     }
 
     protected ResourceDto mapFileToDto(String path, Long size) {
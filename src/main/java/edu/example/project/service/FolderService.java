@@ -2,20 +2,33 @@ package edu.example.project.service;
 
 import edu.example.project.dto.ResourceDto;
 import edu.example.project.exception.BadResourceTypeException;
-import edu.example.project.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.minio.Result;
 import io.minio.errors.*;
 import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -25,59 +38,189 @@ public class FolderService implements PathResolverService {
 
     private final MinioService minioService;
 
-    protected void moveFolder(String from, String to) {
+    private final ObjectPrefetcher objectPrefetcher;
+
+    private final ZipCompressionPolicy compressionPolicy;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ResumableZipArchiver resumableZipArchiver;
+
+    /**
+     * @return copies written to the new path
+     */
+    protected List<WrittenObject> moveFolder(String from, String to) {
         ensureFolderPath(from, to);
         if (from.equals(to)) {
-            return;
+            return List.of();
         }
+        List<WrittenObject> copies = new ArrayList<>();
         try {
             if (pathHasObjectsInside(from)) {
                 for (Result<Item> result : minioService.listObjects(from, true)) {
                     Item item = result.get();
                     String destPath = resolveDestinationPath(item.objectName(), from, to);
-                    minioService.copyObject(item.objectName(), destPath);
-                    minioService.statObject(destPath);
+                    copies.add(minioService.copyObject(item.objectName(), destPath));
                     minioService.removeObject(item.objectName());
                 }
             } else {
-                minioService.copyObject(from, to);
-                minioService.statObject(to);
+                copies.add(minioService.copyObject(from, to));
                 minioService.removeObject(from);
             }
-        } catch (ResourceNotFoundException exception) {
-            throw new RuntimeException("Copy failed", exception);
         } catch (Exception exception) {
             throw new RuntimeException(exception);
         }
+        return copies;
     }
 
-    protected byte[] getFolderBinaryContentZipped(String path) throws IOException {
+    /**
+     * Writes zip archive of folder directly to out while iterating folder listing
+     */
+    protected void writeFolderBinaryContentZipped(String path, OutputStream out) throws IOException {
         ensureFolderPath(path);
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        try (BufferedOutputStream bufferedOut = new BufferedOutputStream(byteOut);
-             ZipOutputStream zipOut = new ZipOutputStream(bufferedOut)
-        ) {
-            if (pathHasObjectsInside(path)) {
-                for (Result<Item> result : minioService.listObjects(path, true)) {
-                    try {
-                        Item objectInfo = result.get();
-                        String key = objectInfo.objectName();
-                        try (InputStream objectIn = minioService.getObject(key)) {
-                            zipOut.putNextEntry(new ZipEntry(resolveZipEntryName(path, key)));
-                            zipOut.write(objectIn.readAllBytes());
-                            zipOut.closeEntry();
-                        }
-                    } catch (Exception exception) {
-                        throw new RuntimeException(exception);
+        writeZipped(List.of(path), out);
+    }
+
+    /**
+     * Lays out deterministic archive of the folder, its length and etag are known before anything is written
+     */
+    protected ResumableZipArchiver.Archive createResumableArchive(String path) {
+        ensureFolderPath(path);
+        return resumableZipArchiver.createArchive(path, resolveFolderName(path));
+    }
+
+    /**
+     * Writes files and folders into one zip archive, each of them placed at the archive root. Root names
+     * which are already taken get " (n)" suffix. Next objects are fetched concurrently by {@link ObjectPrefetcher}
+     * while the current one is being compressed. Entry sizes are not needed upfront: ZipOutputStream writes them
+     * into data descriptors and switches to Zip64 records by itself when an entry or the whole archive exceeds 4GB
+     */
+    protected void writeZipped(List<String> keys, OutputStream out) throws IOException {
+        Map<String, String> rootNames = resolveUniqueRootNames(keys);
+        ArchiveStatistics statistics = new ArchiveStatistics();
+        ZipOutputStream zipOut = new ZipOutputStream(out);
+        boolean hasEntries = false;
+        try (ObjectPrefetcher.Prefetch objects = objectPrefetcher.prefetch(listZipEntrySources(rootNames))) {
+            while (objects.hasNext()) {
+                try (ObjectPrefetcher.PrefetchedObject object = objects.next()) {
+                    ZipEntry entry = createZipEntry(object.getEntryName(), object, zipOut);
+                    zipOut.putNextEntry(entry);
+                    object.writeTo(zipOut);
+                    zipOut.closeEntry();
+                    statistics.add(entry);
+                }
+                hasEntries = true;
+            }
+        }
+        if (!hasEntries) {
+            for (String rootName : rootNames.values()) {
+                zipOut.putNextEntry(new ZipEntry(rootName));
+                zipOut.closeEntry();
+            }
+        }
+        zipOut.finish();
+        zipOut.flush();
+        statistics.record(meterRegistry);
+    }
+
+    /**
+     * Incompressible entries which were read in advance completely are STORED, their CRC can be computed upfront.
+     * Bigger ones are deflated without compression, which costs only copying
+     */
+    private ZipEntry createZipEntry(String name, ObjectPrefetcher.PrefetchedObject object, ZipOutputStream zipOut) {
+        ZipEntry entry = new ZipEntry(name);
+        int level = compressionPolicy.resolveLevel(name, object.getHead());
+        if (level == Deflater.NO_COMPRESSION && object.isComplete()) {
+            CRC32 crc = new CRC32();
+            crc.update(object.getHead());
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(object.getHead().length);
+            entry.setCompressedSize(object.getHead().length);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+            zipOut.setLevel(level);
+        }
+        return entry;
+    }
+
+    /**
+     * File is a single entry, folder contributes an entry for every object inside it.
+     * Folders are listed lazily, while previous entries are being written
+     */
+    private Iterator<ObjectPrefetcher.Source> listZipEntrySources(Map<String, String> rootNames) {
+        Iterator<Map.Entry<String, String>> roots = rootNames.entrySet().iterator();
+        return new Iterator<>() {
+
+            private Map.Entry<String, String> root;
+
+            private ObjectPrefetcher.Source file;
+
+            private Iterator<Result<Item>> folderObjects = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (file == null && !folderObjects.hasNext() && roots.hasNext()) {
+                    root = roots.next();
+                    if (root.getKey().endsWith("/")) {
+                        folderObjects = minioService.listObjects(root.getKey(), true).iterator();
+                    } else {
+                        file = new ObjectPrefetcher.Source(root.getKey(), root.getValue());
                     }
                 }
+                return file != null || folderObjects.hasNext();
+            }
+
+            @Override
+            public ObjectPrefetcher.Source next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (file != null) {
+                    ObjectPrefetcher.Source source = file;
+                    file = null;
+                    return source;
+                }
+                String objectName;
+                try {
+                    objectName = folderObjects.next().get().objectName();
+                } catch (Exception exception) {
+                    throw new RuntimeException(exception);
+                }
+                return new ObjectPrefetcher.Source(objectName, root.getValue() + objectName.substring(root.getKey().length()));
+            }
+        };
+    }
+
+    private Map<String, String> resolveUniqueRootNames(List<String> keys) {
+        Map<String, String> rootNames = new LinkedHashMap<>();
+        Set<String> takenNames = new HashSet<>();
+        for (String key : keys) {
+            if (rootNames.containsKey(key)) {
+                continue;
+            }
+            if (key.endsWith("/")) {
+                String name = resolveFolderName(key);
+                rootNames.put(key, resolveUniqueName(name.substring(0, name.length() - 1), "", takenNames) + "/");
             } else {
-                zipOut.putNextEntry(new ZipEntry(resolveFolderName(path)));
-                zipOut.write(new byte[0]);
-                zipOut.closeEntry();
+                String name = key.substring(key.lastIndexOf("/") + 1);
+                int extensionIndex = name.lastIndexOf(".");
+                if (extensionIndex > 0) {
+                    rootNames.put(key, resolveUniqueName(name.substring(0, extensionIndex), name.substring(extensionIndex), takenNames));
+                } else {
+                    rootNames.put(key, resolveUniqueName(name, "", takenNames));
+                }
             }
         }
-        return byteOut.toByteArray();
+        return rootNames;
+    }
+
+    private String resolveUniqueName(String baseName, String extension, Set<String> takenNames) {
+        String name = baseName + extension;
+        for (int i = 1; !takenNames.add(name); i++) {
+            name = baseName + " (" + i + ")" + extension;
+        }
+        return name;
     }
 
     protected ResourceDto mapFolderToDto(String path) {
@@ -120,11 +263,6 @@ public class FolderService implements PathResolverService {
         return to + relativePath;
     }
 
-    private String resolveZipEntryName(String folderPath, String fullPath) {
-        String pathToFolder = resolvePathToFolder(folderPath);
-        return fullPath.substring(pathToFolder.length());
-    }
-
     private int countFoldersNumber(String path) {
         return path.length() - path.replace("/", "").length();
     }
@@ -169,4 +307,61 @@ public class FolderService implements PathResolverService {
         }
     }
 
+    /**
+     * Compares bytes saved by compression with CPU time of the thread writing the archive
+     */
+    private static class ArchiveStatistics {
+
+        private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+        private final long cpuTimeStart = currentThreadCpuTime();
+
+        private long originalBytes;
+
+        private long compressedBytes;
+
+        private int storedEntries;
+
+        private int deflatedEntries;
+
+        private void add(ZipEntry entry) {
+            originalBytes += entry.getSize();
+            compressedBytes += entry.getCompressedSize();
+            if (entry.getMethod() == ZipEntry.STORED) {
+                storedEntries++;
+            } else {
+                deflatedEntries++;
+            }
+        }
+
+        private void record(MeterRegistry meterRegistry) {
+            DistributionSummary.builder("storage.zip.archive.original")
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .record(originalBytes);
+            DistributionSummary.builder("storage.zip.archive.saved")
+                    .description("Bytes saved by compression per archive")
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .record(originalBytes - compressedBytes);
+            meterRegistry.counter("storage.zip.entries", "method", "stored").increment(storedEntries);
+            meterRegistry.counter("storage.zip.entries", "method", "deflated").increment(deflatedEntries);
+            long cpuTimeEnd = currentThreadCpuTime();
+            if (cpuTimeStart >= 0 && cpuTimeEnd >= 0) {
+                Timer.builder("storage.zip.archive.cpu")
+                        .description("CPU time of the thread writing the archive")
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(cpuTimeEnd - cpuTimeStart));
+            }
+        }
+
+        private static long currentThreadCpuTime() {
+            if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+                return -1;
+            }
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+
+    }
+
 }
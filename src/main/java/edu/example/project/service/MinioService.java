@@ -1,38 +1,303 @@
 package edu.example.project.service;
 
 import edu.example.project.config.BucketProperties;
+import edu.example.project.config.ContentAddressedStorageProperties;
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.config.MinioClientProperties;
+import edu.example.project.config.MultipartMinioClient;
+import edu.example.project.config.PackProperties;
+import edu.example.project.config.UploadProperties;
 import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.model.PackedFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.minio.*;
 import io.minio.errors.*;
+import io.minio.http.Method;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.Part;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
+/**
+ * If content-addressed storage is enabled, file content is stored once under its SHA-256 and the object at user
+ * path is an empty pointer with the hash and size in its user metadata. Pointers are resolved here, so callers
+ * see the same sizes, etags and content as for plain objects.
+ * If packing is enabled, small files of multi-file uploads are stored as byte ranges of pack objects,
+ * they are merged into stats, listings, reads, copies and removals here as well
+ */
 @Service
 @RequiredArgsConstructor
 public class MinioService {
 
+    private static final String USER_METADATA_PREFIX = "x-amz-meta-";
+
+    private static final String CONTENT_HASH_METADATA = "content-sha256";
+
+    private static final String CONTENT_SIZE_METADATA = "content-size";
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+
     private final MinioClient minioClient;
 
+    private final MultipartMinioClient multipartMinioClient;
+
     private final BucketProperties bucketProperties;
 
-    protected void putObject(String path, MultipartFile file) {
+    private final DownloadProperties downloadProperties;
+
+    private final MinioClientProperties minioClientProperties;
+
+    private final UploadProperties uploadProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ContentAddressedStorageProperties contentAddressedStorageProperties;
+
+    private final ContentReferenceService contentReferenceService;
+
+    private final ParallelPartUploader parallelPartUploader;
+
+    private final PackProperties packProperties;
+
+    private final PackedFileStore packedFileStore;
+
+    private final ZipCrcCache zipCrcCache;
+
+    private MinioClient presignClient;
+
+    /**
+     * Presigned URLs are signed for the host they are requested from, so if clients reach MinIO by
+     * another address a separate client is used for signing. Signing is local, no requests are sent with it
+     */
+    @PostConstruct
+    private void createPresignClient() {
+        String publicEndpoint = minioClientProperties.getPublicEndpoint();
+        if (publicEndpoint == null || publicEndpoint.isBlank()) {
+            presignClient = minioClient;
+            return;
+        }
+        presignClient = MinioClient.builder()
+                .endpoint(publicEndpoint)
+                .region(minioClientProperties.getRegion())
+                .credentials(minioClientProperties.getUser(), minioClientProperties.getPassword())
+                .build();
+    }
+
+    protected WrittenObject putObject(String path, MultipartFile file) {
+        if (contentAddressedStorageProperties.isEnabled()) {
+            return putContentAddressedObject(path, file);
+        }
+        CRC32 crc = new CRC32();
+        WrittenObject written = putFile(path, file, crc);
+        zipCrcCache.saveWritten(written.etag(), file.getSize(), crc.getValue());
+        return written;
+    }
+
+    /**
+     * Files bigger than one part are uploaded by several parts at once
+     *
+     * @param crc updated with the uploaded bytes
+     */
+    private WrittenObject putFile(String key, MultipartFile file, CRC32 crc) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (InputStream content = new CheckedInputStream(file.getInputStream(), crc)) {
+            if (file.getSize() > uploadProperties.getPartSize()) {
+                return parallelPartUploader.upload(key, content, file.getContentType());
+            }
+            ObjectWriteResponse response = minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(key)
+                            .stream(content, file.getSize(), -1)
+                            .contentType(file.getContentType())
+                            .build()
+            );
+            return toWrittenObject(response, file.getSize());
+        } catch (RuntimeException exception) {
+            throw exception;
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        } finally {
+            sample.stop(requestTimer("put"));
+        }
+    }
+
+    /**
+     * Streams content of unknown size with multipart upload, several parts are uploaded at once.
+     * Unchecked exceptions thrown by the stream are passed as is
+     */
+    protected WrittenObject putObject(String path, InputStream content, String contentType) {
+        if (contentAddressedStorageProperties.isEnabled()) {
+            return putContentAddressedObject(path, content, contentType);
+        }
+        CRC32 crc = new CRC32();
+        WrittenObject written = putStream(path, new CheckedInputStream(content, crc), contentType);
+        zipCrcCache.saveWritten(written.etag(), written.size(), crc.getValue());
+        return written;
+    }
+
+    /**
+     * Only files of multi-file uploads are packed, see {@link #putPackedObjects(List, List)}
+     */
+    protected boolean isPackable(MultipartFile file) {
+        return isPackingEnabled() && file.getSize() <= packProperties.getThreshold();
+    }
+
+    /**
+     * Writes small files into packs, one request per pack instead of one per file
+     */
+    protected List<WrittenObject> putPackedObjects(List<String> paths, List<MultipartFile> files) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            minioClient.putObject(
+            return packedFileStore.write(paths, files);
+        } finally {
+            sample.stop(requestTimer("put-pack"));
+        }
+    }
+
+    private boolean isPackingEnabled() {
+        return packProperties.isEnabled() && !contentAddressedStorageProperties.isEnabled();
+    }
+
+    /**
+     * @return null if the file is not packed
+     */
+    private PackedFile findPackedFile(String path) {
+        if (!isPackingEnabled() || path.endsWith("/")) {
+            return null;
+        }
+        return packedFileStore.find(path).orElse(null);
+    }
+
+    private WrittenObject putStream(String key, InputStream content, String contentType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return parallelPartUploader.upload(key, content, contentType);
+        } finally {
+            sample.stop(requestTimer("put-stream"));
+        }
+    }
+
+    /**
+     * Multipart file is already on the server, so it is read twice: to hash it and, only if its content is
+     * not stored yet, to upload it
+     */
+    private WrittenObject putContentAddressedObject(String path, MultipartFile file) {
+        String hash;
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(file.getInputStream(), crc)) {
+            hash = hash(in);
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+        zipCrcCache.saveWritten(hash, file.getSize(), crc.getValue());
+        contentReferenceService.addReference(hash, file.getSize(), () -> putFile(toContentKey(hash), file, new CRC32()));
+        return putPointer(path, hash, file.getSize(), file.getContentType());
+    }
+
+    /**
+     * Hash of a stream is known only after it was read, so it is uploaded under a temporary key first and
+     * copied by MinIO to its content key if the content is new
+     */
+    private WrittenObject putContentAddressedObject(String path, InputStream content, String contentType) {
+        String temporaryKey = contentAddressedStorageProperties.getPrefix() + "tmp/" + UUID.randomUUID();
+        MessageDigest digest = createDigest();
+        CRC32 crc = new CRC32();
+        try {
+            long size = putStream(temporaryKey, new DigestInputStream(new CheckedInputStream(content, crc), digest), contentType).size();
+            String hash = HexFormat.of().formatHex(digest.digest());
+            zipCrcCache.saveWritten(hash, size, crc.getValue());
+            contentReferenceService.addReference(hash, size, () -> composeObject(temporaryKey, toContentKey(hash)));
+            return putPointer(path, hash, size, contentType);
+        } finally {
+            deleteObject(temporaryKey);
+        }
+    }
+
+    /**
+     * References content which is already stored, no bytes are transferred
+     *
+     * @return null if content with this hash and size is not stored
+     */
+    protected WrittenObject putObjectByHash(String path, String hash, long size, String contentType) {
+        if (!contentAddressedStorageProperties.isEnabled() || !contentReferenceService.addReferenceIfStored(hash, size)) {
+            return null;
+        }
+        return putPointer(path, hash, size, contentType);
+    }
+
+    /**
+     * Reference is already counted, it is taken back if the pointer can't be written
+     */
+    private WrittenObject putPointer(String path, String hash, long size, String contentType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            ObjectWriteResponse response = minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketProperties.getDefaultName())
                             .object(path)
-                            .stream(file.getInputStream(), file.getSize(), -1)
-                            .contentType(file.getContentType())
+                            .stream(new ByteArrayInputStream(new byte[]{}), 0, -1)
+                            .contentType(contentType)
+                            .userMetadata(Map.of(CONTENT_HASH_METADATA, hash, CONTENT_SIZE_METADATA, String.valueOf(size)))
+                            .build()
+            );
+            return new WrittenObject(response.object(), hash, response.versionId(), size);
+        } catch (Exception exception) {
+            releaseContent(hash);
+            throw new RuntimeException(exception);
+        } finally {
+            sample.stop(requestTimer("put-pointer"));
+        }
+    }
+
+    /**
+     * Compose copies objects of any size, unlike copy limited to 5GB
+     */
+    private void composeObject(String from, String to) {
+        try {
+            minioClient.composeObject(
+                    ComposeObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(to)
+                            .sources(List.of(
+                                    ComposeSource.builder()
+                                            .bucket(bucketProperties.getDefaultName())
+                                            .object(from)
+                                            .build()
+                            ))
                             .build()
             );
         } catch (Exception exception) {
@@ -40,9 +305,113 @@ public class MinioService {
         }
     }
 
-    protected void copyObject(String from, String to) {
+    private void releaseContent(String hash) {
+        contentReferenceService.removeReference(hash);
+    }
+
+    /**
+     * Content objects which lost their last reference are removed here instead of by the removal of the reference,
+     * so no MinIO request is made while a reference count row is locked
+     */
+    @Scheduled(initialDelayString = "${storage.cas.sweep-interval}",
+            fixedDelayString = "${storage.cas.sweep-interval}")
+    public void removeUnreferencedContent() {
+        if (!contentAddressedStorageProperties.isEnabled()) {
+            return;
+        }
+        List<String> hashes;
+        do {
+            hashes = contentReferenceService.claimUnreferenced(SWEEP_BATCH_SIZE);
+            for (String hash : hashes) {
+                deleteObject(toContentKey(hash));
+                contentReferenceService.forgetClaimed(hash);
+            }
+        } while (hashes.size() == SWEEP_BATCH_SIZE);
+    }
+
+    private String toContentKey(String hash) {
+        return contentAddressedStorageProperties.getPrefix() + hash;
+    }
+
+    private String hash(InputStream in) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[downloadProperties.getBufferSize()];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * @return upload id, parts of the object are uploaded with it
+     */
+    protected String createMultipartUpload(String path, String contentType) {
         try {
-            minioClient.copyObject(
+            return multipartMinioClient.createMultipartUpload(bucketProperties.getDefaultName(), path, contentType);
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * @return etag of uploaded part
+     */
+    protected String uploadPart(String path, String uploadId, int partNumber, InputStream content, long length) {
+        try {
+            return multipartMinioClient.uploadPart(bucketProperties.getDefaultName(), path, uploadId, partNumber, content, length);
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * @param partEtags etags of all parts by part number
+     * @param size sum of part sizes
+     */
+    protected WrittenObject completeMultipartUpload(String path, String uploadId, SortedMap<Integer, String> partEtags, long size) {
+        Part[] parts = partEtags.entrySet().stream()
+                .map(part -> new Part(part.getKey(), part.getValue()))
+                .toArray(Part[]::new);
+        try {
+            ObjectWriteResponse response = multipartMinioClient.completeMultipartUpload(bucketProperties.getDefaultName(), path, uploadId, parts);
+            return toWrittenObject(response, size);
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected void abortMultipartUpload(String path, String uploadId) {
+        try {
+            multipartMinioClient.abortMultipartUpload(bucketProperties.getDefaultName(), path, uploadId);
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Copy is done by MinIO, size of the copy is not returned
+     */
+    protected WrittenObject copyObject(String from, String to) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String hash = null;
+        try {
+            Optional<PackedFile> packedCopy = isPackingEnabled() ? packedFileStore.copy(from, to) : Optional.empty();
+            if (packedCopy.isPresent()) {
+                return new WrittenObject(to, packedCopy.get().getEtag(), null, packedCopy.get().getLength());
+            }
+            if (contentAddressedStorageProperties.isEnabled()) {
+                hash = referenceCopiedContent(from);
+            }
+            ObjectWriteResponse response = minioClient.copyObject(
                     CopyObjectArgs.builder()
                             .bucket(bucketProperties.getDefaultName())
                             .object(to)
@@ -54,12 +423,54 @@ public class MinioService {
                             )
                             .build()
             );
+            if (hash != null) {
+                return new WrittenObject(response.object(), hash, response.versionId(), null);
+            }
+            return toWrittenObject(response, null);
         } catch (Exception exception) {
+            if (hash != null) {
+                releaseContent(hash);
+            }
             throw new RuntimeException(exception);
+        } finally {
+            sample.stop(requestTimer("copy"));
+        }
+    }
+
+    /**
+     * Copy of a pointer is one more reference to its content
+     *
+     * @return hash of the content, null for plain objects
+     */
+    private String referenceCopiedContent(String path) throws ResourceNotFoundException {
+        Map<String, String> metadata = statRawObject(path).userMetadata();
+        String hash = findMetadata(metadata, CONTENT_HASH_METADATA);
+        if (hash != null && !contentReferenceService.addReferenceIfStored(hash, Long.parseLong(findMetadata(metadata, CONTENT_SIZE_METADATA)))) {
+            throw new IllegalStateException("Content of " + path + " is not stored");
+        }
+        return hash;
+    }
+
+    /**
+     * Pointers are described by their content: size is the content size and etag is its hash
+     */
+    protected ObjectStat statObject(String path) throws ResourceNotFoundException {
+        PackedFile packedFile = findPackedFile(path);
+        if (packedFile != null) {
+            return new ObjectStat(packedFile.getPath(), packedFile.getLength(), packedFile.getEtag(),
+                    packedFile.getContentType(), packedFile.getLastModified());
+        }
+        StatObjectResponse stat = statRawObject(path);
+        String hash = contentAddressedStorageProperties.isEnabled() ? findMetadata(stat.userMetadata(), CONTENT_HASH_METADATA) : null;
+        if (hash == null) {
+            return new ObjectStat(stat.object(), stat.size(), stat.etag(), stat.contentType(), stat.lastModified().toInstant());
         }
+        return new ObjectStat(stat.object(), Long.parseLong(findMetadata(stat.userMetadata(), CONTENT_SIZE_METADATA)), hash,
+                stat.contentType(), stat.lastModified().toInstant());
     }
 
-    protected StatObjectResponse statObject(String path) throws ResourceNotFoundException {
+    private StatObjectResponse statRawObject(String path) throws ResourceNotFoundException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             return minioClient.statObject(
                     StatObjectArgs.builder()
@@ -72,10 +483,13 @@ public class MinioService {
                 throw new ResourceNotFoundException("Object does not exist", exception);
             }
             throw new RuntimeException(exception);
+        } finally {
+            sample.stop(requestTimer("stat"));
         }
     }
 
     protected void putEmptyObject(String path) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             minioClient.putObject(
                     PutObjectArgs.builder()
@@ -86,25 +500,96 @@ public class MinioService {
             );
         } catch (Exception exception) {
             throw new RuntimeException(exception);
+        } finally {
+            sample.stop(requestTimer("put-empty"));
         }
     }
 
+    private WrittenObject toWrittenObject(ObjectWriteResponse response, Long size) {
+        return new WrittenObject(response.object(), response.etag(), response.versionId(), size);
+    }
+
+    /**
+     * Latency of write path requests, lets compare how much time uploads and moves spend in MinIO round trips
+     */
+    private Timer requestTimer(String operation) {
+        return Timer.builder("storage.minio.requests")
+                .description("Latency of MinIO requests")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    /**
+     * User metadata of pointers is listed too, so listed items can be described by {@link #sizeOf(Item)}
+     * and {@link #etagOf(Item)}. Packed files are merged with objects stored in MinIO in byte order of keys,
+     * both are read page by page while the listing is iterated
+     */
     protected Iterable<Result<Item>> listObjects(String prefix, boolean isRecursive) {
-        return minioClient.listObjects(
-                ListObjectsArgs.builder()
-                        .bucket(bucketProperties.getDefaultName())
-                        .prefix(prefix)
-                        .recursive(isRecursive)
-                        .build()
-        );
+        return listObjects(prefix, null, isRecursive);
+    }
+
+    /**
+     * Listing of keys after the given one, a folder key is listed again if keys inside it follow
+     *
+     * @param startAfter null to list all keys of the prefix
+     */
+    protected Iterable<Result<Item>> listObjects(String prefix, String startAfter, boolean isRecursive) {
+        Iterable<Result<Item>> objects = listStoredObjects(prefix, startAfter, isRecursive);
+        if (!isPackingEnabled()) {
+            return objects;
+        }
+        Iterable<PackedFile> packedFiles = packedFileStore.list(prefix, startAfter, isRecursive);
+        return () -> new MergedListing(objects.iterator(), packedFiles.iterator());
+    }
+
+    private Iterable<Result<Item>> listStoredObjects(String prefix, String startAfter, boolean isRecursive) {
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                .bucket(bucketProperties.getDefaultName())
+                .prefix(prefix)
+                .recursive(isRecursive)
+                .includeUserMetadata(contentAddressedStorageProperties.isEnabled());
+        if (startAfter != null) {
+            args.startAfter(startAfter);
+        }
+        return minioClient.listObjects(args.build());
+    }
+
+    /**
+     * Size of the content, pointer objects are empty themselves
+     */
+    protected long sizeOf(Item item) {
+        String size = findMetadata(item.userMetadata(), CONTENT_SIZE_METADATA);
+        return size == null ? item.size() : Long.parseLong(size);
+    }
+
+    /**
+     * Etag of the content, all pointer objects have the same etag of empty object themselves
+     */
+    protected String etagOf(Item item) {
+        String hash = findMetadata(item.userMetadata(), CONTENT_HASH_METADATA);
+        return hash == null ? item.etag() : hash;
     }
 
+    /**
+     * Removed pointer releases its content, content object is removed once it has no references left
+     */
     protected void removeObject(String path) {
+        if (isPackingEnabled() && !path.endsWith("/") && packedFileStore.remove(path)) {
+            return;
+        }
+        String hash = contentAddressedStorageProperties.isEnabled() ? findContentHash(path) : null;
+        deleteObject(path);
+        if (hash != null) {
+            releaseContent(hash);
+        }
+    }
+
+    private void deleteObject(String key) {
         try {
             minioClient.removeObject(
                     RemoveObjectArgs.builder()
                             .bucket(bucketProperties.getDefaultName())
-                            .object(path)
+                            .object(key)
                             .build()
             );
         } catch (Exception exception) {
@@ -114,10 +599,15 @@ public class MinioService {
 
     protected void removeObjectsFrom(String prefix) {
         List<DeleteObject> deleteObjects = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
         try {
-            for (Result<Item> result : listObjects(prefix, true)) {
+            for (Result<Item> result : listStoredObjects(prefix, null, true)) {
                 Item item = result.get();
                 deleteObjects.add(new DeleteObject(item.objectName()));
+                String hash = findMetadata(item.userMetadata(), CONTENT_HASH_METADATA);
+                if (hash != null) {
+                    hashes.add(hash);
+                }
             }
             for (Result<DeleteError> result : minioClient.removeObjects(
                     RemoveObjectsArgs.builder()
@@ -130,19 +620,293 @@ public class MinioService {
         } catch (Exception exception) {
             throw new RuntimeException(exception);
         }
+        for (String hash : hashes) {
+            releaseContent(hash);
+        }
+        if (isPackingEnabled()) {
+            packedFileStore.removeAll(prefix);
+        }
+    }
+
+    /**
+     * @return hash of the content if the object is a pointer, null otherwise
+     */
+    private String findContentHash(String path) {
+        try {
+            return findMetadata(statRawObject(path).userMetadata(), CONTENT_HASH_METADATA);
+        } catch (ResourceNotFoundException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Content of a pointer is read from its content object, which costs one more stat request
+     */
+    private String resolveContentKey(String path) {
+        if (!contentAddressedStorageProperties.isEnabled()) {
+            return path;
+        }
+        String hash = findContentHash(path);
+        return hash == null ? path : toContentKey(hash);
+    }
+
+    /**
+     * Stat returns user metadata without prefix, listing returns it with prefix, both in any letter case
+     */
+    private static String findMetadata(Map<String, String> metadata, String name) {
+        if (metadata == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            String key = entry.getKey().toLowerCase(Locale.ROOT);
+            if (key.equals(name) || key.equals(USER_METADATA_PREFIX + name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
     }
 
     protected InputStream getObject(String path) {
+        PackedFile packedFile = findPackedFile(path);
+        if (packedFile != null) {
+            return packedFileStore.read(packedFile);
+        }
         try {
             return minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(bucketProperties.getDefaultName())
-                            .object(path)
+                            .object(resolveContentKey(path))
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected InputStream getObject(String path, long offset, long length) {
+        PackedFile packedFile = findPackedFile(path);
+        if (packedFile != null) {
+            return packedFileStore.read(packedFile, offset, length);
+        }
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(resolveContentKey(path))
+                            .offset(offset)
+                            .length(length)
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Same as {@link #getObject(String, long, long)}, but fails if the content has another etag by now, so ranges
+     * read at different times are known to come from the same content. Null length reads up to the end
+     */
+    protected InputStream getObject(String path, String etag, long offset, Long length) throws IOException {
+        PackedFile packedFile = findPackedFile(path);
+        if (packedFile != null) {
+            checkEtag(path, etag, packedFile.getEtag());
+            return packedFileStore.read(packedFile, offset, length == null ? packedFile.getLength() - offset : length);
+        }
+        String key = path;
+        String matchETag = etag;
+        String hash = contentAddressedStorageProperties.isEnabled() ? findContentHash(path) : null;
+        if (hash != null) {
+            // content objects are immutable, the pointer is what can change
+            checkEtag(path, etag, hash);
+            key = toContentKey(hash);
+            matchETag = null;
+        }
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(key)
+                            .offset(offset)
+                            .length(length)
+                            .matchETag(matchETag)
                             .build()
             );
+        } catch (ErrorResponseException exception) {
+            if ("PreconditionFailed".equals(exception.errorResponse().code())) {
+                throw new IOException("Object " + path + " was changed, its etag is not " + etag);
+            }
+            throw new RuntimeException(exception);
         } catch (Exception exception) {
             throw new RuntimeException(exception);
         }
     }
 
+    private static void checkEtag(String path, String expected, String actual) throws IOException {
+        if (!expected.equals(actual)) {
+            throw new IOException("Object " + path + " was changed, its etag is not " + expected);
+        }
+    }
+
+    /**
+     * @param fileName name client saves downloaded content with, sent back by MinIO in Content-Disposition
+     * @return null for packed files, a byte range of an object can't be presigned
+     */
+    protected String getPresignedDownloadUrl(String path, String fileName, Duration expiry) {
+        if (findPackedFile(path) != null) {
+            return null;
+        }
+        try {
+            return presignClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.GET)
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(resolveContentKey(path))
+                            .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                            .extraQueryParams(Map.of("response-content-disposition", attachment(fileName)))
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Names are quoted and escaped, non-ASCII ones are also given in RFC 5987 encoding
+     */
+    private static String attachment(String fileName) {
+        return ContentDisposition.attachment()
+                .filename(fileName, StandardCharsets.UTF_8)
+                .build()
+                .toString();
+    }
+
+    /**
+     * Copies object content to out through a fixed-size buffer. If writing fails (e.g. client disconnected)
+     * object stream is closed before it was read to the end, so the rest of the object is not fetched from MinIO
+     */
+    protected void writeObject(String path, OutputStream out) throws IOException {
+        try (InputStream objectIn = getObject(path)) {
+            copy(objectIn, out);
+        }
+    }
+
+    /**
+     * Same as {@link #writeObject(String, OutputStream)}, but only requested byte range is fetched from MinIO
+     */
+    protected void writeObject(String path, long offset, long length, OutputStream out) throws IOException {
+        try (InputStream objectIn = getObject(path, offset, length)) {
+            copy(objectIn, out);
+        }
+    }
+
+    /**
+     * Same as {@link #writeObject(String, long, long, OutputStream)} for content with the given etag only
+     */
+    protected void writeObject(String path, String etag, long offset, long length, OutputStream out) throws IOException {
+        try (InputStream objectIn = getObject(path, etag, offset, length)) {
+            copy(objectIn, out);
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[downloadProperties.getBufferSize()];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Merges two listings sorted by key. Failed results of MinIO listing are returned as soon as they are met
+     */
+    private static class MergedListing implements Iterator<Result<Item>> {
+
+        private final Iterator<Result<Item>> objects;
+
+        private final Iterator<PackedFile> packedFiles;
+
+        private Result<Item> nextObject;
+
+        private PackedFile nextPackedFile;
+
+        private MergedListing(Iterator<Result<Item>> objects, Iterator<PackedFile> packedFiles) {
+            this.objects = objects;
+            this.packedFiles = packedFiles;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextObject != null || nextPackedFile != null || objects.hasNext() || packedFiles.hasNext();
+        }
+
+        @Override
+        public Result<Item> next() {
+            if (nextObject == null && objects.hasNext()) {
+                nextObject = objects.next();
+            }
+            if (nextPackedFile == null && packedFiles.hasNext()) {
+                nextPackedFile = packedFiles.next();
+            }
+            if (nextObject == null && nextPackedFile == null) {
+                throw new NoSuchElementException();
+            }
+            if (nextPackedFile == null || nextObject != null && precedes(nextObject, nextPackedFile)) {
+                Result<Item> object = nextObject;
+                nextObject = null;
+                return object;
+            }
+            PackedFile file = nextPackedFile;
+            nextPackedFile = null;
+            return new Result<>(new PackedItem(file));
+        }
+
+        private boolean precedes(Result<Item> object, PackedFile file) {
+            try {
+                return Arrays.compareUnsigned(object.get().objectName().getBytes(StandardCharsets.UTF_8),
+                        file.getPath().getBytes(StandardCharsets.UTF_8)) <= 0;
+            } catch (Exception exception) {
+                return true;
+            }
+        }
+
+    }
+
+    /**
+     * Listing item of a packed file
+     */
+    private static class PackedItem extends Item {
+
+        private final PackedFile file;
+
+        private PackedItem(PackedFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public String objectName() {
+            return file.getPath();
+        }
+
+        @Override
+        public long size() {
+            return file.getLength();
+        }
+
+        @Override
+        public String etag() {
+            return file.getEtag();
+        }
+
+        @Override
+        public ZonedDateTime lastModified() {
+            return file.getLastModified().atZone(ZoneOffset.UTC);
+        }
+
+        @Override
+        public boolean isDir() {
+            return false;
+        }
+
+    }
+
 }
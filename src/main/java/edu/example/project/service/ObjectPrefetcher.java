@@ -0,0 +1,224 @@
+package edu.example.project.service;
+
+import edu.example.project.config.DownloadProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens objects ahead of the consumer on a bounded thread pool, so MinIO round trips of the next
+ * objects overlap with writing of the current one. Objects are returned in the order of sources
+ */
+@Service
+@RequiredArgsConstructor
+public class ObjectPrefetcher {
+
+    private final MinioService minioService;
+
+    private final DownloadProperties downloadProperties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void createExecutor() {
+        int threads = downloadProperties.getZipPrefetchThreads();
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(downloadProperties.getZipPrefetchQueueCapacity()),
+                new CustomizableThreadFactory("zip-prefetch-"),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    protected Prefetch prefetch(Iterator<Source> sources) {
+        return new Prefetch(sources, downloadProperties.getZipPrefetchDepth());
+    }
+
+    /**
+     * Folder objects are not fetched, they have no content
+     */
+    private PrefetchedObject fetch(Source source) {
+        if (source.key().endsWith("/")) {
+            return new PrefetchedObject(source, new byte[0], null);
+        }
+        InputStream objectIn = minioService.getObject(source.key());
+        try {
+            int headSize = downloadProperties.getZipPrefetchBufferSize();
+            byte[] head = objectIn.readNBytes(headSize);
+            if (head.length < headSize) {
+                objectIn.close();
+                return new PrefetchedObject(source, head, null);
+            }
+            return new PrefetchedObject(source, head, objectIn);
+        } catch (IOException exception) {
+            closeQuietly(objectIn);
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * @param key object to fetch
+     * @param entryName name of archive entry the object is written to
+     */
+    protected record Source(String key, String entryName) {}
+
+    /**
+     * Keeps at most depth objects in flight, each of them holds no more than zipPrefetchBufferSize bytes
+     * and an open MinIO stream for the rest of the content. Closing cancels everything not consumed yet
+     */
+    protected class Prefetch implements AutoCloseable {
+
+        private final Iterator<Source> sources;
+
+        private final int depth;
+
+        private final Deque<CompletableFuture<PrefetchedObject>> pending = new ArrayDeque<>();
+
+        private Prefetch(Iterator<Source> sources, int depth) {
+            this.sources = sources;
+            this.depth = depth;
+            fill();
+        }
+
+        public boolean hasNext() {
+            return !pending.isEmpty() || sources.hasNext();
+        }
+
+        public PrefetchedObject next() throws IOException {
+            if (pending.isEmpty()) {
+                try {
+                    return fetch(sources.next());
+                } catch (UncheckedIOException exception) {
+                    throw exception.getCause();
+                }
+            }
+            CompletableFuture<PrefetchedObject> next = pending.poll();
+            fill();
+            return await(next);
+        }
+
+        private void fill() {
+            while (pending.size() < depth && sources.hasNext()) {
+                Source source = sources.next();
+                pending.add(CompletableFuture.supplyAsync(() -> fetch(source), executor));
+            }
+        }
+
+        private PrefetchedObject await(CompletableFuture<PrefetchedObject> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for object");
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof UncheckedIOException uncheckedIOException) {
+                    throw uncheckedIOException.getCause();
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (CompletableFuture<PrefetchedObject> future : pending) {
+                future.thenAccept(PrefetchedObject::close);
+            }
+            pending.clear();
+        }
+
+    }
+
+    protected class PrefetchedObject implements AutoCloseable {
+
+        private final Source source;
+
+        private final byte[] head;
+
+        private final InputStream rest;
+
+        private PrefetchedObject(Source source, byte[] head, InputStream rest) {
+            this.source = source;
+            this.head = head;
+            this.rest = rest;
+        }
+
+        public String getEntryName() {
+            return source.entryName();
+        }
+
+        /**
+         * @return bytes read in advance, whole content if object is complete
+         */
+        public byte[] getHead() {
+            return head;
+        }
+
+        /**
+         * @return true if the whole object content was read in advance
+         */
+        public boolean isComplete() {
+            return rest == null;
+        }
+
+        /**
+         * Writes buffered part of the object, then streams the rest through a fixed-size buffer
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(head);
+            if (rest == null) {
+                return;
+            }
+            try (InputStream in = rest) {
+                byte[] buffer = new byte[downloadProperties.getBufferSize()];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (rest != null) {
+                closeQuietly(rest);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,13 @@
+package edu.example.project.service;
+
+import java.time.Instant;
+
+/**
+ * What is known about a stored file or folder marker, whether it is a MinIO object, a pointer or a packed file
+ *
+ * @param size size of the content, pointer objects are empty themselves
+ * @param etag etag of the content, hash of it for pointers
+ * @param contentType null if it is not known
+ */
+public record ObjectStat(String key, long size, String etag, String contentType, Instant lastModified) {
+}
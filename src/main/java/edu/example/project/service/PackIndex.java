@@ -0,0 +1,176 @@
+package edu.example.project.service;
+
+import edu.example.project.model.Pack;
+import edu.example.project.model.PackedFile;
+import edu.example.project.repository.PackRepository;
+import edu.example.project.repository.PackedFileRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Maps paths of packed files to byte ranges of packs and counts live bytes of every pack.
+ * Files are locked before their packs, packs in order of their keys
+ */
+@Service
+@RequiredArgsConstructor
+public class PackIndex {
+
+    private final PackRepository packRepository;
+
+    private final PackedFileRepository packedFileRepository;
+
+    @Transactional(readOnly = true)
+    protected Optional<PackedFile> find(String path) {
+        return packedFileRepository.findById(path);
+    }
+
+    /**
+     * @param after path of the last file of the previous page
+     * @param end upper bound of the listed paths
+     */
+    @Transactional(readOnly = true)
+    protected List<PackedFile> listPage(String after, String end, int limit) {
+        return packedFileRepository.findPage(after, end, limit);
+    }
+
+    @Transactional(readOnly = true)
+    protected List<PackedFile> listPack(String packKey) {
+        return packedFileRepository.findByPackKeyOrderByOffset(packKey);
+    }
+
+    /**
+     * Packed files which are replaced by the new ones are released from their packs
+     */
+    @Transactional
+    protected void add(Pack pack, List<PackedFile> files) {
+        for (PackedFile file : files) {
+            packedFileRepository.findLockedByPath(file.getPath()).ifPresent(this::release);
+        }
+        packedFileRepository.flush();
+        packRepository.save(pack);
+        packedFileRepository.saveAll(files);
+    }
+
+    /**
+     * Copy references the same byte range of the pack
+     *
+     * @return empty if the source is not packed
+     */
+    @Transactional
+    protected Optional<PackedFile> copy(String from, String to) {
+        Optional<PackedFile> source = packedFileRepository.findLockedByPath(from);
+        if (source.isEmpty()) {
+            return Optional.empty();
+        }
+        packedFileRepository.findLockedByPath(to).ifPresent(this::release);
+        packedFileRepository.flush();
+        PackedFile file = source.get();
+        Pack pack = lockPack(file.getPackKey());
+        pack.setLiveBytes(pack.getLiveBytes() + file.getLength());
+        PackedFile copy = new PackedFile();
+        copy.setPath(to);
+        copy.setPackKey(file.getPackKey());
+        copy.setOffset(file.getOffset());
+        copy.setLength(file.getLength());
+        copy.setContentType(file.getContentType());
+        copy.setEtag(file.getEtag());
+        copy.setLastModified(Instant.now());
+        packedFileRepository.save(copy);
+        return Optional.of(copy);
+    }
+
+    /**
+     * @return false if the file is not packed
+     */
+    @Transactional
+    protected boolean remove(String path) {
+        Optional<PackedFile> file = packedFileRepository.findLockedByPath(path);
+        file.ifPresent(this::release);
+        return file.isPresent();
+    }
+
+    @Transactional
+    protected void removeAll(String prefix) {
+        List<PackedFile> files = packedFileRepository.findLockedByPathStartingWithOrderByPath(prefix);
+        Map<String, Long> releasedBytes = new TreeMap<>();
+        for (PackedFile file : files) {
+            releasedBytes.merge(file.getPackKey(), file.getLength(), Long::sum);
+        }
+        for (Map.Entry<String, Long> released : releasedBytes.entrySet()) {
+            Pack pack = lockPack(released.getKey());
+            pack.setLiveBytes(pack.getLiveBytes() - released.getValue());
+        }
+        packedFileRepository.deleteAll(files);
+    }
+
+    /**
+     * Points files of the compacted pack to ranges copied into the new pack and retires the old pack.
+     * Files copied after the ranges were read share their offsets, so they are moved too
+     *
+     * @param newPack null if the old pack has no files left
+     * @param offsets offsets in the new pack by offsets in the old pack
+     * @return false if the pack was already compacted by another node
+     */
+    @Transactional
+    protected boolean relocate(String oldPackKey, Pack newPack, Map<Long, Long> offsets) {
+        List<PackedFile> files = packedFileRepository.findLockedByPackKey(oldPackKey);
+        Pack oldPack = lockPack(oldPackKey);
+        if (oldPack.getRetiredAt() != null) {
+            return false;
+        }
+        if (!files.isEmpty()) {
+            if (newPack == null) {
+                throw new IllegalStateException("Files of pack " + oldPackKey + " were not copied");
+            }
+            long liveBytes = 0;
+            for (PackedFile file : files) {
+                Long offset = offsets.get(file.getOffset());
+                if (offset == null) {
+                    throw new IllegalStateException("Range of " + file.getPath() + " was not copied");
+                }
+                file.setPackKey(newPack.getObjectKey());
+                file.setOffset(offset);
+                liveBytes += file.getLength();
+            }
+            newPack.setLiveBytes(liveBytes);
+            packRepository.save(newPack);
+        }
+        oldPack.setLiveBytes(0L);
+        oldPack.setRetiredAt(Instant.now());
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    protected List<Pack> findSparsePacks(double deadRatio) {
+        return packRepository.findSparse(1 - deadRatio);
+    }
+
+    @Transactional(readOnly = true)
+    protected List<Pack> findRetiredPacks(Instant before) {
+        return packRepository.findByRetiredAtBefore(before);
+    }
+
+    @Transactional
+    protected void deletePack(String packKey) {
+        packRepository.deleteById(packKey);
+    }
+
+    private void release(PackedFile file) {
+        Pack pack = lockPack(file.getPackKey());
+        pack.setLiveBytes(pack.getLiveBytes() - file.getLength());
+        packedFileRepository.delete(file);
+    }
+
+    private Pack lockPack(String packKey) {
+        return packRepository.findForUpdate(packKey)
+                .orElseThrow(() -> new IllegalStateException("Pack " + packKey + " does not exist"));
+    }
+
+}
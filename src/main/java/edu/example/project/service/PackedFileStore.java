@@ -0,0 +1,324 @@
+package edu.example.project.service;
+
+import edu.example.project.config.BucketProperties;
+import edu.example.project.config.PackProperties;
+import edu.example.project.model.Pack;
+import edu.example.project.model.PackedFile;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Stores small files as byte ranges of pack objects, several files are written with one request.
+ * Packs are immutable: removed files leave dead bytes, which are dropped by compaction rewriting the pack
+ */
+@Service
+@RequiredArgsConstructor
+public class PackedFileStore {
+
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private final MinioClient minioClient;
+
+    private final BucketProperties bucketProperties;
+
+    private final PackProperties packProperties;
+
+    private final PackIndex packIndex;
+
+    private final ZipCrcCache zipCrcCache;
+
+    protected Optional<PackedFile> find(String path) {
+        return packIndex.find(path);
+    }
+
+    /**
+     * Files are listed in byte order of their paths, a page at a time while the listing is iterated.
+     * Non-recursive listing returns only files placed right in the folder, their folders are listed by MinIO
+     *
+     * @param startAfter null to list all files of the prefix
+     */
+    protected Iterable<PackedFile> list(String prefix, String startAfter, boolean isRecursive) {
+        return () -> new ListingIterator(prefix, startAfter, isRecursive);
+    }
+
+    /**
+     * Files are read into memory one pack at a time, a pack is closed when the next file doesn't fit into it
+     */
+    protected List<WrittenObject> write(List<String> keys, List<MultipartFile> files) {
+        List<WrittenObject> written = new ArrayList<>();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        List<PackedFile> entries = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                byte[] bytes = files.get(i).getBytes();
+                if (content.size() > 0 && content.size() + bytes.length > packProperties.getPackSize()) {
+                    written.addAll(writePack(content, entries));
+                    content.reset();
+                    entries.clear();
+                }
+                PackedFile entry = new PackedFile();
+                entry.setPath(keys.get(i));
+                entry.setOffset((long) content.size());
+                entry.setLength((long) bytes.length);
+                entry.setContentType(files.get(i).getContentType());
+                entry.setEtag(md5(bytes));
+                entry.setLastModified(Instant.now());
+                entries.add(entry);
+                content.write(bytes);
+                zipCrcCache.saveWritten(entry.getEtag(), bytes.length, crc(bytes));
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+        if (!entries.isEmpty()) {
+            written.addAll(writePack(content, entries));
+        }
+        return written;
+    }
+
+    /**
+     * Pack object is written before it is indexed, so indexed files are always readable
+     */
+    private List<WrittenObject> writePack(ByteArrayOutputStream content, List<PackedFile> entries) {
+        String packKey = packProperties.getPrefix() + UUID.randomUUID();
+        putObject(packKey, content.toByteArray());
+        for (PackedFile entry : entries) {
+            entry.setPackKey(packKey);
+        }
+        try {
+            packIndex.add(new Pack(packKey, (long) content.size()), List.copyOf(entries));
+        } catch (RuntimeException exception) {
+            removeObject(packKey);
+            throw exception;
+        }
+        return entries.stream()
+                .map(entry -> new WrittenObject(entry.getPath(), entry.getEtag(), null, entry.getLength()))
+                .toList();
+    }
+
+    protected InputStream read(PackedFile file) {
+        return read(file, 0, file.getLength());
+    }
+
+    protected InputStream read(PackedFile file, long offset, long length) {
+        if (length == 0) {
+            return new ByteArrayInputStream(new byte[]{});
+        }
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(file.getPackKey())
+                            .offset(file.getOffset() + offset)
+                            .length(length)
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected Optional<PackedFile> copy(String from, String to) {
+        return packIndex.copy(from, to);
+    }
+
+    protected boolean remove(String path) {
+        return packIndex.remove(path);
+    }
+
+    protected void removeAll(String prefix) {
+        packIndex.removeAll(prefix);
+    }
+
+    /**
+     * Removes packs retired one interval ago, then rewrites packs with too many dead bytes
+     */
+    @Scheduled(initialDelayString = "${storage.pack.compaction-interval}",
+            fixedDelayString = "${storage.pack.compaction-interval}")
+    public void compactPacks() {
+        if (!packProperties.isEnabled()) {
+            return;
+        }
+        for (Pack pack : packIndex.findRetiredPacks(Instant.now().minus(packProperties.getCompactionInterval()))) {
+            removeObject(pack.getObjectKey());
+            packIndex.deletePack(pack.getObjectKey());
+        }
+        for (Pack pack : packIndex.findSparsePacks(packProperties.getCompactionDeadRatio())) {
+            compact(pack);
+        }
+    }
+
+    /**
+     * Ranges shared by copies of a file are copied once
+     */
+    private void compact(Pack pack) {
+        List<PackedFile> files = packIndex.listPack(pack.getObjectKey());
+        Map<Long, Long> offsets = new HashMap<>();
+        Pack newPack = null;
+        if (!files.isEmpty()) {
+            byte[] oldContent = readPack(pack.getObjectKey());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (PackedFile file : files) {
+                if (!offsets.containsKey(file.getOffset())) {
+                    offsets.put(file.getOffset(), (long) content.size());
+                    content.write(oldContent, Math.toIntExact(file.getOffset()), Math.toIntExact(file.getLength()));
+                }
+            }
+            newPack = new Pack(packProperties.getPrefix() + UUID.randomUUID(), (long) content.size());
+            putObject(newPack.getObjectKey(), content.toByteArray());
+        }
+        boolean relocated;
+        try {
+            relocated = packIndex.relocate(pack.getObjectKey(), newPack, offsets);
+        } catch (RuntimeException exception) {
+            if (newPack != null) {
+                removeObject(newPack.getObjectKey());
+            }
+            throw exception;
+        }
+        if (!relocated && newPack != null) {
+            removeObject(newPack.getObjectKey());
+        }
+    }
+
+    private byte[] readPack(String packKey) {
+        try (InputStream in = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucketProperties.getDefaultName())
+                        .object(packKey)
+                        .build()
+        )) {
+            return in.readAllBytes();
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private void putObject(String key, byte[] content) {
+        try {
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(key)
+                            .stream(new ByteArrayInputStream(content), content.length, -1)
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private void removeObject(String key) {
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(key)
+                            .build()
+            );
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Next page starts after the last path of the previous one, so files written meanwhile don't shift it
+     */
+    private class ListingIterator implements Iterator<PackedFile> {
+
+        private final String prefix;
+
+        private final boolean isRecursive;
+
+        private final String end;
+
+        private String after;
+
+        private Iterator<PackedFile> page = Collections.emptyIterator();
+
+        private boolean isLastPage;
+
+        private PackedFile next;
+
+        private ListingIterator(String prefix, String startAfter, boolean isRecursive) {
+            this.prefix = prefix;
+            this.isRecursive = isRecursive;
+            this.end = prefix.substring(0, prefix.length() - 1) + "0";
+            this.after = startAfter == null ? prefix : startAfter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (!page.hasNext()) {
+                    if (isLastPage) {
+                        return false;
+                    }
+                    List<PackedFile> files = packIndex.listPage(after, end, LIST_PAGE_SIZE);
+                    isLastPage = files.size() < LIST_PAGE_SIZE;
+                    if (files.isEmpty()) {
+                        return false;
+                    }
+                    after = files.getLast().getPath();
+                    page = files.iterator();
+                }
+                PackedFile file = page.next();
+                if (isRecursive || file.getPath().indexOf('/', prefix.length()) == -1) {
+                    next = file;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public PackedFile next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PackedFile file = next;
+            next = null;
+            return file;
+        }
+
+    }
+
+}
@@ -0,0 +1,257 @@
+package edu.example.project.service;
+
+import edu.example.project.config.BucketProperties;
+import edu.example.project.config.MultipartMinioClient;
+import edu.example.project.config.UploadProperties;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.messages.Part;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uploads a stream as MinIO multipart upload with several parts in flight at once, so one big file is not
+ * limited by a single connection. Parts are read into buffers of a pool shared by all uploads of the node,
+ * reading waits for a free buffer, so the client is not read faster than MinIO accepts parts
+ */
+@Service
+@RequiredArgsConstructor
+public class ParallelPartUploader {
+
+    private static final int MAX_PARTS = 10000;
+
+    /**
+     * Content is read this far before a part buffer is taken
+     */
+    private static final int HEAD_SIZE = 64 * 1024;
+
+    private final MultipartMinioClient multipartMinioClient;
+
+    private final BucketProperties bucketProperties;
+
+    private final UploadProperties uploadProperties;
+
+    private ExecutorService executor;
+
+    private Semaphore bufferPermits;
+
+    private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    private void createExecutor() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        bufferPermits = new Semaphore(uploadProperties.getPartBuffers());
+    }
+
+    @PreDestroy
+    private void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Content which fits into one part is sent with a single PUT. Unchecked exceptions thrown by the stream
+     * are passed as is, multipart upload is aborted after parts in flight are finished
+     */
+    protected WrittenObject upload(String key, InputStream content, String contentType) {
+        byte[] head = readHead(content);
+        if (head.length < Math.min(HEAD_SIZE, uploadProperties.getPartSize())) {
+            return putObject(key, head, head.length, contentType);
+        }
+        byte[] first = takeBuffer();
+        int length;
+        try {
+            System.arraycopy(head, 0, first, 0, head.length);
+            length = head.length + readPart(content, first, head.length);
+        } catch (RuntimeException exception) {
+            releaseBuffer(first);
+            throw exception;
+        }
+        if (length < first.length) {
+            try {
+                return putObject(key, first, length, contentType);
+            } finally {
+                releaseBuffer(first);
+            }
+        }
+        return uploadParts(key, first, content, contentType);
+    }
+
+    private WrittenObject putObject(String key, byte[] buffer, int length, String contentType) {
+        try {
+            ObjectWriteResponse response = multipartMinioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketProperties.getDefaultName())
+                            .object(key)
+                            .stream(new ByteArrayInputStream(buffer, 0, length), length, -1)
+                            .contentType(contentType)
+                            .build()
+            ).get();
+            return new WrittenObject(response.object(), response.etag(), response.versionId(), (long) length);
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * First part is already read into the full buffer. Buffer belongs to the reading loop until its part
+     * is submitted, then the part upload gives it back to the pool
+     */
+    private WrittenObject uploadParts(String key, byte[] first, InputStream content, String contentType) {
+        String uploadId;
+        try {
+            uploadId = multipartMinioClient.createMultipartUpload(bucketProperties.getDefaultName(), key, contentType);
+        } catch (Exception exception) {
+            releaseBuffer(first);
+            throw new RuntimeException(exception);
+        }
+        Semaphore uploadPermits = new Semaphore(uploadProperties.getPartParallelism());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<Part>> parts = new ArrayList<>();
+        long size = 0;
+        byte[] buffer = first;
+        int length = first.length;
+        try {
+            while (true) {
+                if (parts.size() == MAX_PARTS) {
+                    throw new IllegalStateException("Content is longer than " + MAX_PARTS + " parts");
+                }
+                uploadPermits.acquire();
+                byte[] part = buffer;
+                buffer = null;
+                size += length;
+                parts.add(submitPart(key, uploadId, parts.size() + 1, part, length, uploadPermits, failure));
+                if (length < part.length || failure.get() != null) {
+                    break;
+                }
+                buffer = takeBuffer();
+                length = readPart(content, buffer);
+                if (length == 0) {
+                    break;
+                }
+            }
+        } catch (Exception exception) {
+            if (exception instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failure.compareAndSet(null, exception);
+        } finally {
+            if (buffer != null) {
+                releaseBuffer(buffer);
+            }
+        }
+        List<Part> uploadedParts = awaitParts(parts);
+        try {
+            if (failure.get() == null) {
+                ObjectWriteResponse response = multipartMinioClient.completeMultipartUpload(bucketProperties.getDefaultName(),
+                        key, uploadId, uploadedParts.toArray(Part[]::new));
+                return new WrittenObject(response.object(), response.etag(), response.versionId(), size);
+            }
+            multipartMinioClient.abortMultipartUpload(bucketProperties.getDefaultName(), key, uploadId);
+        } catch (Exception exception) {
+            failure.compareAndSet(null, exception);
+        }
+        Exception exception = failure.get();
+        if (exception instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new RuntimeException(exception);
+    }
+
+    private Future<Part> submitPart(String key, String uploadId, int partNumber, byte[] buffer, int length,
+                                    Semaphore uploadPermits, AtomicReference<Exception> failure) {
+        return executor.submit(() -> {
+            try {
+                String etag = multipartMinioClient.uploadPart(bucketProperties.getDefaultName(), key, uploadId, partNumber,
+                        new ByteArrayInputStream(buffer, 0, length), length);
+                return new Part(partNumber, etag);
+            } catch (Exception exception) {
+                failure.compareAndSet(null, exception);
+                throw exception;
+            } finally {
+                releaseBuffer(buffer);
+                uploadPermits.release();
+            }
+        });
+    }
+
+    /**
+     * All parts in flight are awaited, so nothing is uploaded after the upload is completed or aborted.
+     * Failed parts are left out, their failure is already recorded
+     */
+    private List<Part> awaitParts(List<Future<Part>> futures) {
+        List<Part> parts = new ArrayList<>();
+        boolean interrupted = false;
+        for (Future<Part> future : futures) {
+            while (true) {
+                try {
+                    parts.add(future.get());
+                    break;
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                } catch (ExecutionException exception) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return parts;
+    }
+
+    /**
+     * Small content is read without a part buffer, so small files don't wait for the pool
+     */
+    private byte[] readHead(InputStream content) {
+        try {
+            return content.readNBytes(Math.toIntExact(Math.min(HEAD_SIZE, uploadProperties.getPartSize())));
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the stream ends
+     */
+    private int readPart(InputStream content, byte[] buffer) {
+        return readPart(content, buffer, 0);
+    }
+
+    private int readPart(InputStream content, byte[] buffer, int offset) {
+        try {
+            return content.readNBytes(buffer, offset, buffer.length - offset);
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Buffers are allocated on demand up to the pool size and reused afterwards
+     */
+    private byte[] takeBuffer() {
+        bufferPermits.acquireUninterruptibly();
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[Math.toIntExact(uploadProperties.getPartSize())];
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        bufferPermits.release();
+    }
+
+}
@@ -0,0 +1,596 @@
+package edu.example.project.service;
+
+import edu.example.project.model.ResourceEntry;
+import edu.example.project.repository.ResourceEntryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Metadata of user files and folders in PostgreSQL, addressed by object keys. It is written after objects
+ * are written to MinIO, readers fall back to MinIO for what is not indexed and put it here
+ */
+@Service
+@RequiredArgsConstructor
+public class ResourceIndex {
+
+    private static final Pattern USER_KEY = Pattern.compile("^user-(\\d+)-files/(.*)$");
+
+    private static final Pattern LIKE_SPECIAL = Pattern.compile("[\\\\%_]");
+
+    /**
+     * ETag of an empty object, which every folder marker is
+     */
+    private static final String FOLDER_ETAG = "d41d8cd98f00b204e9800998ecf8427e";
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Folder aggregates are set only when the folder is inserted, afterwards they are changed by deltas
+     */
+    private static final String UPSERT = "INSERT INTO resources "
+            + "(user_id, parent_path, name, type, size, etag, content_type, last_modified, created_at, listed, "
+            + "total_size, file_count, content_modified) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (user_id, parent_path, name) DO UPDATE SET type = EXCLUDED.type, size = EXCLUDED.size, "
+            + "etag = EXCLUDED.etag, content_type = CASE WHEN EXCLUDED.content_type IS NULL AND EXCLUDED.etag = resources.etag "
+            + "THEN resources.content_type ELSE EXCLUDED.content_type END, last_modified = EXCLUDED.last_modified, "
+            + "listed = resources.listed OR EXCLUDED.listed";
+
+    private static final String ADD_TOTALS = "UPDATE resources SET total_size = total_size + ?, file_count = file_count + ?, "
+            + "content_modified = greatest(content_modified, ?) "
+            + "WHERE user_id = ? AND parent_path = ? AND name = ? AND total_size IS NOT NULL";
+
+    private static final String FORGET_TOTALS = "UPDATE resources SET total_size = NULL, file_count = NULL, content_modified = NULL "
+            + "WHERE user_id = ? AND parent_path = ? AND name = ?";
+
+    /**
+     * Files are summed per folder they are directly in, then the sums are added to every ancestor of that folder.
+     * Ancestors of "a/b/" are found at positions of "/" in it, position 0 is the root folder. Deltas of the user are
+     * dropped by the same statement, so exactly the deltas of writes it sees are dropped
+     */
+    private static final String RECOMPUTE_TOTALS = "WITH dropped AS (DELETE FROM folder_total_deltas WHERE user_id = ?), direct AS ("
+            + "SELECT parent_path, sum(size) AS total_size, count(*) AS file_count, max(last_modified) AS content_modified "
+            + "FROM resources WHERE user_id = ? AND type = 'FILE' GROUP BY parent_path"
+            + "), totals AS ("
+            + "SELECT substr(d.parent_path, 1, p) AS path, sum(d.total_size) AS total_size, sum(d.file_count) AS file_count, "
+            + "max(d.content_modified) AS content_modified "
+            + "FROM direct d CROSS JOIN LATERAL generate_series(0, length(d.parent_path)) p "
+            + "WHERE p = 0 OR substr(d.parent_path, p, 1) = '/' GROUP BY 1"
+            + ") "
+            + "UPDATE resources f SET total_size = coalesce(t.total_size, 0), file_count = coalesce(t.file_count, 0), "
+            + "content_modified = t.content_modified "
+            + "FROM (SELECT g.parent_path, g.name, s.total_size, s.file_count, s.content_modified FROM resources g "
+            + "LEFT JOIN totals s ON s.path = g.parent_path || g.name WHERE g.user_id = ? AND g.type = 'DIRECTORY') t "
+            + "WHERE f.user_id = ? AND f.parent_path = t.parent_path AND f.name = t.name";
+
+    /**
+     * Null total size makes aggregates of the folder unknown
+     */
+    private static final String INSERT_DELTA = "INSERT INTO folder_total_deltas "
+            + "(user_id, parent_path, name, total_size, file_count, content_modified) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Deltas taken by another flush are skipped, each delta is written once
+     */
+    private static final String CLAIM_DELTAS = "DELETE FROM folder_total_deltas WHERE id IN ("
+            + "SELECT id FROM folder_total_deltas ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED"
+            + ") RETURNING user_id, parent_path, name, total_size, file_count, content_modified";
+
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    /**
+     * Returns the name only if the run was not claimed by any node until now
+     */
+    private static final String CLAIM_RUN = "INSERT INTO scheduled_runs (name, claimed_until) "
+            + "VALUES (?, now() + ? * interval '1 millisecond') "
+            + "ON CONFLICT (name) DO UPDATE SET claimed_until = EXCLUDED.claimed_until "
+            + "WHERE scheduled_runs.claimed_until <= now() RETURNING name";
+
+    private static final String RECONCILIATION_RUN = "index-reconciliation";
+
+    private static final String SELECT_USER_KEYS = "SELECT parent_path, name FROM resources WHERE user_id = ?";
+
+    private static final String DELETE = "DELETE FROM resources WHERE user_id = ? AND parent_path = ? AND name = ?";
+
+    private static final String UNLIST = "UPDATE resources SET listed = false "
+            + "WHERE user_id = ? AND parent_path = ? AND name = ?";
+
+    /**
+     * Copy with unknown etag keeps the one of its source
+     */
+    private static final String UPDATE_ETAG = "UPDATE resources SET etag = coalesce(?, etag) "
+            + "WHERE user_id = ? AND parent_path = ? AND name = ?";
+
+    private final ResourceEntryRepository resourceEntryRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    protected ResourceEntry file(String key, Long size, String etag, String contentType, Instant lastModified) {
+        ResourceEntry entry = newEntry(key, ResourceEntry.FILE, lastModified);
+        entry.setSize(size);
+        entry.setEtag(etag);
+        entry.setContentType(contentType);
+        return entry;
+    }
+
+    /**
+     * @param listed true only if every child of the folder is indexed, e.g. the folder was just created
+     */
+    protected ResourceEntry folder(String key, boolean listed, Instant lastModified) {
+        ResourceEntry entry = newEntry(key, ResourceEntry.DIRECTORY, lastModified);
+        entry.setEtag(FOLDER_ETAG);
+        entry.setListed(listed);
+        return entry;
+    }
+
+    /**
+     * New folder, nothing is inside it yet
+     */
+    protected ResourceEntry emptyFolder(String key, Instant lastModified) {
+        ResourceEntry entry = folder(key, true, lastModified);
+        entry.setTotalSize(0L);
+        entry.setFileCount(0L);
+        return entry;
+    }
+
+    private ResourceEntry newEntry(String key, String type, Instant lastModified) {
+        Path path = parse(key);
+        ResourceEntry entry = new ResourceEntry();
+        entry.setUserId(path.userId());
+        entry.setParentPath(path.parentPath());
+        entry.setName(path.name());
+        entry.setType(type);
+        entry.setLastModified(lastModified);
+        entry.setCreatedAt(lastModified);
+        return entry;
+    }
+
+    @Transactional(readOnly = true)
+    protected Optional<ResourceEntry> find(String key) {
+        Path path = parse(key);
+        return resourceEntryRepository.findById(new ResourceEntry.Key(path.userId(), path.parentPath(), path.name()));
+    }
+
+    /**
+     * If true, a missing entry means there is no such resource. The user root folder has no parent
+     */
+    @Transactional(readOnly = true)
+    protected boolean isParentListed(String key) {
+        Path path = parse(key);
+        if (path.name().isEmpty()) {
+            return false;
+        }
+        return find(parentKey(key, path)).map(ResourceEntry::isListed).orElse(false);
+    }
+
+    /**
+     * Children of the folder in byte order of names, complete only if the folder is listed
+     */
+    @Transactional(readOnly = true)
+    protected List<ResourceEntry> list(String folderKey) {
+        Path path = parse(folderKey);
+        return resourceEntryRepository.findByUserIdAndParentPathOrderByName(path.userId(), path.relative()).stream()
+                .filter(entry -> !entry.getName().isEmpty())
+                .toList();
+    }
+
+    /**
+     * Children of the folder whose names follow the given one in byte order, complete only if the folder is listed
+     *
+     * @param after name of the last child of the previous page, empty for the first page
+     */
+    @Transactional(readOnly = true)
+    protected List<ResourceEntry> listPage(String folderKey, String after, int limit) {
+        Path path = parse(folderKey);
+        return resourceEntryRepository.findPage(path.userId(), path.relative(), after, limit);
+    }
+
+    /**
+     * If true, every resource of the user is indexed, so the index can be searched
+     */
+    @Transactional(readOnly = true)
+    protected boolean isTreeListed(String rootKey) {
+        return find(rootKey).isPresent() && !resourceEntryRepository.existsUnlistedFolder(parse(rootKey).userId());
+    }
+
+    /**
+     * If true, the user has an indexed file with this content. Pointers to stored content have its hash as etag
+     */
+    @Transactional(readOnly = true)
+    protected boolean containsFile(String rootKey, String etag, long size) {
+        return resourceEntryRepository.existsFile(parse(rootKey).userId(), etag, size);
+    }
+
+    /**
+     * Resources of the user whose names contain the query, case-insensitively, the most relevant first.
+     * Complete only if the tree of the user is listed
+     */
+    @Transactional(readOnly = true)
+    protected List<ResourceEntry> search(String rootKey, String query, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        String escaped = LIKE_SPECIAL.matcher(normalized).replaceAll("\\\\$0");
+        return resourceEntryRepository.search(parse(rootKey).userId(), normalized, "%" + escaped + "%", escaped + "%", limit);
+    }
+
+    /**
+     * Inserts new entries and overwrites existing ones, a listed folder stays listed. Content type of
+     * an unchanged file is kept if the entry has none, e.g. it comes from a listing
+     */
+    @Transactional
+    protected void put(Collection<ResourceEntry> entries) {
+        jdbcTemplate.batchUpdate(UPSERT, entries, BATCH_SIZE, (statement, entry) -> {
+            statement.setLong(1, entry.getUserId());
+            statement.setString(2, entry.getParentPath());
+            statement.setString(3, entry.getName());
+            statement.setString(4, entry.getType());
+            statement.setObject(5, entry.getSize(), Types.BIGINT);
+            statement.setString(6, entry.getEtag());
+            statement.setString(7, entry.getContentType());
+            statement.setTimestamp(8, Timestamp.from(entry.getLastModified()));
+            statement.setTimestamp(9, Timestamp.from(entry.getCreatedAt()));
+            statement.setBoolean(10, entry.isListed());
+            statement.setObject(11, entry.getTotalSize(), Types.BIGINT);
+            statement.setObject(12, entry.getFileCount(), Types.BIGINT);
+            statement.setTimestamp(13, entry.getContentModified() == null ? null : Timestamp.from(entry.getContentModified()));
+        });
+    }
+
+    /**
+     * Indexes files and folders just written to MinIO. Written files are new, so they are added to aggregates
+     * of their folders
+     */
+    @Transactional
+    protected void putWritten(Collection<ResourceEntry> entries) {
+        put(entries);
+        Map<Path, Totals> deltas = new TreeMap<>();
+        for (ResourceEntry entry : entries) {
+            if (entry.isFile()) {
+                addToAncestors(deltas, entry.getUserId(), entry.getParentPath(), totalsOf(entry));
+            }
+        }
+        queueDeltas(deltas);
+    }
+
+    /**
+     * Replaces indexed children of the folder with its actual children listed from MinIO and marks it listed.
+     * Children which no longer exist are removed together with their content and subtracted from aggregates of
+     * the folder and its ancestors. Children indexed since the listing
+     * started are kept, they may be written concurrently and missed by the listing
+     *
+     * @param listedAt time the listing started
+     */
+    @Transactional
+    protected void putListedFolder(ResourceEntry folder, List<ResourceEntry> children, Instant listedAt) {
+        Set<String> names = children.stream()
+                .map(ResourceEntry::getName)
+                .collect(Collectors.toSet());
+        String folderPath = folder.getParentPath() + folder.getName();
+        Map<Path, Totals> deltas = new TreeMap<>();
+        for (ResourceEntry indexed : resourceEntryRepository.findByUserIdAndParentPathOrderByName(folder.getUserId(), folderPath)) {
+            if (!indexed.getName().isEmpty() && !names.contains(indexed.getName()) && indexed.getLastModified().isBefore(listedAt)) {
+                resourceEntryRepository.delete(indexed);
+                if (!indexed.isFile()) {
+                    String relative = indexed.getParentPath() + indexed.getName();
+                    resourceEntryRepository.deleteByParentPathRange(indexed.getUserId(), relative, prefixEnd(relative));
+                }
+                Totals totals = totalsOf(indexed);
+                addToAncestors(deltas, folder.getUserId(), folderPath, totals == null ? null : totals.negate());
+            }
+        }
+        resourceEntryRepository.flush();
+        queueDeltas(deltas);
+        folder.setListed(true);
+        put(children);
+        put(List.of(folder));
+    }
+
+    /**
+     * Replaces everything indexed for the user with the whole tree listed recursively from MinIO.
+     * Every folder of the tree becomes listed
+     */
+    @Transactional
+    protected void putListedTree(String rootKey, List<ResourceEntry> entries) {
+        long userId = parse(rootKey).userId();
+        Set<ResourceEntry.Key> keys = entries.stream()
+                .map(entry -> new ResourceEntry.Key(entry.getUserId(), entry.getParentPath(), entry.getName()))
+                .collect(Collectors.toSet());
+        List<ResourceEntry.Key> stale = jdbcTemplate.query(SELECT_USER_KEYS,
+                        (row, number) -> new ResourceEntry.Key(userId, row.getString(1), row.getString(2)), userId).stream()
+                .filter(key -> !keys.contains(key))
+                .toList();
+        jdbcTemplate.batchUpdate(DELETE, stale, BATCH_SIZE, (statement, key) -> {
+            statement.setLong(1, key.getUserId());
+            statement.setString(2, key.getParentPath());
+            statement.setString(3, key.getName());
+        });
+        for (ResourceEntry entry : entries) {
+            if (!entry.isFile()) {
+                entry.setListed(true);
+            }
+        }
+        put(entries);
+        recomputeTotals(userId);
+    }
+
+    /**
+     * Makes readers list the folder from MinIO again, used when the index could not follow a change already made
+     * in MinIO. Aggregates of the folder and its ancestors are unknown until they are recomputed
+     */
+    @Transactional
+    protected void unlist(String folderKey) {
+        Path path = parse(folderKey);
+        Map<Path, Totals> deltas = new TreeMap<>();
+        addToAncestors(deltas, path.userId(), path.relative(), null);
+        queueDeltas(deltas);
+        jdbcTemplate.update(UNLIST, path.userId(), path.parentPath(), path.name());
+    }
+
+    /**
+     * Aggregates of every folder of the user are computed from indexed files, which fixes any drift of deltas.
+     * Only a listed tree has all its files indexed
+     */
+    @Transactional
+    protected void recomputeTotals(long userId) {
+        jdbcTemplate.update(RECOMPUTE_TOTALS, userId, userId, userId, userId);
+    }
+
+    /**
+     * Writes committed deltas, every folder row is updated once per batch however many writes changed it.
+     * Deltas are removed in the transaction which writes them, so they are kept if writing fails. Flushes of
+     * several nodes take different deltas
+     */
+    @Scheduled(initialDelayString = "${storage.index.totals-flush-interval}",
+            fixedDelayString = "${storage.index.totals-flush-interval}")
+    public void flushTotals() {
+        Integer flushed;
+        do {
+            flushed = transactionTemplate.execute(status -> flushTotalsBatch());
+        } while (flushed != null && flushed == FLUSH_BATCH_SIZE);
+    }
+
+    private int flushTotalsBatch() {
+        Map<Path, Totals> deltas = new TreeMap<>();
+        List<Path> claimed = new ArrayList<>();
+        jdbcTemplate.query(CLAIM_DELTAS, row -> {
+            Path folder = new Path(row.getLong(1), row.getString(2), row.getString(3));
+            Long size = row.getObject(4, Long.class);
+            Timestamp modified = row.getTimestamp(6);
+            mergeDelta(deltas, folder, size == null ? null
+                    : new Totals(size, row.getLong(5), modified == null ? null : modified.toInstant()));
+            claimed.add(folder);
+        }, FLUSH_BATCH_SIZE);
+        writeDeltas(deltas);
+        return claimed.size();
+    }
+
+    /**
+     * Reconciliation is claimed in the database, so one node reconciles per half of the interval however many
+     * nodes run it. Half, so a node scheduled slightly early doesn't skip a whole interval
+     */
+    @Transactional
+    protected boolean claimReconciliation(Duration interval) {
+        return !jdbcTemplate.queryForList(CLAIM_RUN, String.class, RECONCILIATION_RUN, interval.toMillis() / 2).isEmpty();
+    }
+
+    @Transactional(readOnly = true)
+    protected List<Long> findUserIds() {
+        return resourceEntryRepository.findUserIds();
+    }
+
+    /**
+     * Folder is moved with everything inside it. Server-side copies may get new ETags, they are taken from the copies
+     */
+    @Transactional
+    protected void move(String from, String to, List<WrittenObject> copies) {
+        remove(to);
+        Path source = parse(from);
+        Path target = parse(to);
+        Instant now = Instant.now();
+        Optional<ResourceEntry> moved = find(from);
+        if (moved.isPresent()) {
+            Totals totals = totalsOf(moved.get());
+            Map<Path, Totals> deltas = new TreeMap<>();
+            addToAncestors(deltas, source.userId(), source.parentPath(), totals == null ? null : totals.negate());
+            addToAncestors(deltas, target.userId(), target.parentPath(), totals == null ? null : totals.modifiedAt(now));
+            queueDeltas(deltas);
+        }
+        resourceEntryRepository.rename(source.userId(), source.parentPath(), source.name(), target.parentPath(), target.name(), now);
+        if (from.endsWith("/")) {
+            resourceEntryRepository.moveParentPathRange(source.userId(), source.relative(), prefixEnd(source.relative()),
+                    target.relative(), now);
+        }
+        jdbcTemplate.batchUpdate(UPDATE_ETAG, copies, BATCH_SIZE, (statement, copy) -> {
+            Path path = parse(copy.key());
+            statement.setString(1, copy.etag());
+            statement.setLong(2, path.userId());
+            statement.setString(3, path.parentPath());
+            statement.setString(4, path.name());
+        });
+    }
+
+    /**
+     * Folder is removed with everything inside it
+     */
+    @Transactional
+    protected void remove(String key) {
+        Path path = parse(key);
+        if (path.name().isEmpty()) {
+            resourceEntryRepository.deleteByUserId(path.userId());
+            return;
+        }
+        Optional<ResourceEntry> removed = find(key);
+        if (removed.isPresent()) {
+            resourceEntryRepository.delete(removed.get());
+            Totals totals = totalsOf(removed.get());
+            Map<Path, Totals> deltas = new TreeMap<>();
+            addToAncestors(deltas, path.userId(), path.parentPath(), totals == null ? null : totals.negate());
+            queueDeltas(deltas);
+        }
+        if (key.endsWith("/")) {
+            resourceEntryRepository.deleteByParentPathRange(path.userId(), path.relative(), prefixEnd(path.relative()));
+        }
+        resourceEntryRepository.flush();
+    }
+
+    /**
+     * @return null if the entry is a folder with unknown aggregates
+     */
+    private Totals totalsOf(ResourceEntry entry) {
+        if (entry.isFile()) {
+            return new Totals(entry.getSize(), 1, entry.getLastModified());
+        }
+        if (entry.getTotalSize() == null) {
+            return null;
+        }
+        return new Totals(entry.getTotalSize(), entry.getFileCount(), entry.getContentModified());
+    }
+
+    /**
+     * Adds totals to every folder on the path from the root to the folder with the given relative path.
+     * Unknown totals make aggregates of all these folders unknown
+     */
+    private void addToAncestors(Map<Path, Totals> deltas, long userId, String folderPath, Totals totals) {
+        int end = -1;
+        do {
+            int nameStart = folderPath.lastIndexOf('/', end - 1) + 1;
+            Path folder = new Path(userId, folderPath.substring(0, nameStart), folderPath.substring(nameStart, end + 1));
+            mergeDelta(deltas, folder, totals);
+            end = folderPath.indexOf('/', end + 1);
+        } while (end != -1);
+    }
+
+    /**
+     * Unknown totals stay unknown whatever is added to them
+     */
+    private void mergeDelta(Map<Path, Totals> deltas, Path folder, Totals totals) {
+        if (totals == null || deltas.containsKey(folder) && deltas.get(folder) == null) {
+            deltas.put(folder, null);
+        } else {
+            deltas.merge(folder, totals, Totals::plus);
+        }
+    }
+
+    /**
+     * Deltas are inserted in the transaction of the write and applied by {@link #flushTotals()}, so writes don't
+     * lock rows of common ancestors, e.g. the root folder, till their transactions end
+     */
+    private void queueDeltas(Map<Path, Totals> deltas) {
+        jdbcTemplate.batchUpdate(INSERT_DELTA, new ArrayList<>(deltas.entrySet()), BATCH_SIZE, (statement, delta) -> {
+            Totals totals = delta.getValue();
+            statement.setLong(1, delta.getKey().userId());
+            statement.setString(2, delta.getKey().parentPath());
+            statement.setString(3, delta.getKey().name());
+            statement.setObject(4, totals == null ? null : totals.size(), Types.BIGINT);
+            statement.setObject(5, totals == null ? null : totals.fileCount(), Types.BIGINT);
+            statement.setTimestamp(6, totals == null || totals.modified() == null ? null : Timestamp.from(totals.modified()));
+        });
+    }
+
+    /**
+     * Folders are updated in path order, so concurrent updates lock them in the same order
+     */
+    private void writeDeltas(Map<Path, Totals> deltas) {
+        List<Map.Entry<Path, Totals>> known = new ArrayList<>();
+        List<Path> unknown = new ArrayList<>();
+        for (Map.Entry<Path, Totals> delta : deltas.entrySet()) {
+            if (delta.getValue() == null) {
+                unknown.add(delta.getKey());
+            } else {
+                known.add(delta);
+            }
+        }
+        jdbcTemplate.batchUpdate(ADD_TOTALS, known, BATCH_SIZE, (statement, delta) -> {
+            Totals totals = delta.getValue();
+            statement.setLong(1, totals.size());
+            statement.setLong(2, totals.fileCount());
+            statement.setTimestamp(3, totals.modified() == null ? null : Timestamp.from(totals.modified()));
+            statement.setLong(4, delta.getKey().userId());
+            statement.setString(5, delta.getKey().parentPath());
+            statement.setString(6, delta.getKey().name());
+        });
+        jdbcTemplate.batchUpdate(FORGET_TOTALS, unknown, BATCH_SIZE, (statement, folder) -> {
+            statement.setLong(1, folder.userId());
+            statement.setString(2, folder.parentPath());
+            statement.setString(3, folder.name());
+        });
+    }
+
+    /**
+     * Upper bound of paths starting with the folder path, "/" is followed by "0" in byte order
+     */
+    private String prefixEnd(String folderPath) {
+        return folderPath.substring(0, folderPath.length() - 1) + "0";
+    }
+
+    private String parentKey(String key, Path path) {
+        return key.substring(0, key.length() - path.name().length());
+    }
+
+    private Path parse(String key) {
+        Matcher matcher = USER_KEY.matcher(key);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a key of user resource: " + key);
+        }
+        String relative = matcher.group(2);
+        int nameEnd = relative.endsWith("/") ? relative.length() - 1 : relative.length();
+        int parentEnd = relative.lastIndexOf('/', nameEnd - 1) + 1;
+        return new Path(Long.parseLong(matcher.group(1)), relative.substring(0, parentEnd), relative.substring(parentEnd));
+    }
+
+    private record Path(long userId, String parentPath, String name) implements Comparable<Path> {
+
+        private String relative() {
+            return parentPath + name;
+        }
+
+        @Override
+        public int compareTo(Path other) {
+            int result = Long.compare(userId, other.userId);
+            return result != 0 ? result : relative().compareTo(other.relative());
+        }
+
+    }
+
+    /**
+     * Change of folder aggregates, modification time only moves forward, so removals have none
+     */
+    private record Totals(long size, long fileCount, Instant modified) {
+
+        private Totals plus(Totals other) {
+            Instant latest = modified == null || other.modified != null && other.modified.isAfter(modified) ? other.modified : modified;
+            return new Totals(size + other.size, fileCount + other.fileCount, latest);
+        }
+
+        private Totals negate() {
+            return new Totals(-size, -fileCount, null);
+        }
+
+        private Totals modifiedAt(Instant time) {
+            return new Totals(size, fileCount, fileCount == 0 ? null : time);
+        }
+
+    }
+
+}
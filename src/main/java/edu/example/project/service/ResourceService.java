@@ -1,43 +1,122 @@
 package edu.example.project.service;
 
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.config.IndexProperties;
+import edu.example.project.config.ListingProperties;
+import edu.example.project.config.SearchProperties;
+import edu.example.project.config.UploadProperties;
 import edu.example.project.dto.ResourceDto;
+import edu.example.project.dto.ResourcePageDto;
+import edu.example.project.dto.UploadSessionDto;
 import edu.example.project.exception.BadResourceTypeException;
+import edu.example.project.exception.InvalidCursorException;
 import edu.example.project.exception.ResourceAlreadyExistsException;
 import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.model.ResourceEntry;
 import io.minio.*;
 import io.minio.messages.Item;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class ResourceService {
 
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * Queued after the last match of a listing, also when the listing failed
+     */
+    private static final ResourceEntry LISTING_END = new ResourceEntry();
+
     private final MinioService minioService;
 
     private final FileService fileService;
 
     private final FolderService folderService;
 
+    private final DownloadProperties downloadProperties;
+
+    private final UploadTaskRunner uploadTaskRunner;
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    private final UploadProperties uploadProperties;
+
+    private final ResourceIndex resourceIndex;
+
+    private final SearchProperties searchProperties;
+
+    private final ListingProperties listingProperties;
+
+    private final IndexProperties indexProperties;
+
+    private ExecutorService treeIndexExecutor;
+
+    @PostConstruct
+    private void createTreeIndexExecutor() {
+        treeIndexExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @PreDestroy
+    private void shutdownTreeIndexExecutor() {
+        treeIndexExecutor.shutdownNow();
+    }
+
     public ResourceDto createFolder(Long userId, String path) throws ResourceNotFoundException, ResourceAlreadyExistsException {
         folderService.ensureFolderPath(path);
         try {
             String parentFolder = folderService.resolvePathToFolder(path);
             String userContextPath = redirectToUserRootFolder(userId, path);
-            findResourceInfo(redirectToUserRootFolder(userId, parentFolder));
+            String userContextParent = redirectToUserRootFolder(userId, parentFolder);
+            findResourceInfo(userContextParent);
             try {
                 findResourceInfo(userContextPath);
                 throw new ResourceAlreadyExistsException("Folder already exists");
             } catch (ResourceNotFoundException exception) {
                 folderService.createFolder(userContextPath);
+                updateIndex(() -> resourceIndex.put(List.of(resourceIndex.emptyFolder(userContextPath, Instant.now()))),
+                        userContextParent);
                 return folderService.mapFolderToDto(userContextPath);
             }
         } catch (ResourceNotFoundException exception) {
@@ -47,92 +126,650 @@ public class ResourceService {
 
     public List<ResourceDto> getFolderContents(Long userId, String path) throws ResourceNotFoundException {
         folderService.ensureFolderPath(path);
-        StatObjectResponse resourceInfo = findResourceInfo(redirectToUserRootFolder(userId, path));
-        if (folderService.pathHasObjectsInside(resourceInfo.object())) {
-            return findFolderContents(resourceInfo.object());
+        String folder = redirectToUserRootFolder(userId, path);
+        List<ResourceDto> resources = new ArrayList<>();
+        for (ResourceEntry entry : listFolder(folder, findResourceInfo(folder))) {
+            resources.add(mapEntryToDto(folder, entry));
         }
-        else {
-            return new ArrayList<>();
+        return resources;
+    }
+
+    /**
+     * Pages are read in byte order of names, starting after the name encoded in the cursor, so they stay stable
+     * while the folder changes. Pages of a listed folder are read from the index. A folder which is not listed yet
+     * is read from MinIO page by page and stays not listed, its contents are indexed by the first full listing
+     *
+     * @param cursor next cursor of the previous page, null for the first page
+     * @throws InvalidCursorException if cursor was not issued by this method
+     */
+    public ResourcePageDto getFolderContents(Long userId, String path, String cursor, int limit) throws ResourceNotFoundException {
+        folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
+        ResourceEntry folderEntry = findResourceInfo(folder);
+        int pageSize = Math.max(1, Math.min(limit, listingProperties.getMaxLimit()));
+        String after = cursor == null ? "" : decodeCursor(cursor);
+        List<ResourceEntry> entries = folderEntry.isListed()
+                ? resourceIndex.listPage(folder, after, pageSize + 1)
+                : listFolderPage(folder, after, pageSize + 1);
+        ResourcePageDto page = new ResourcePageDto();
+        page.setItems(entries.stream()
+                .limit(pageSize)
+                .map(entry -> mapEntryToDto(folder, entry))
+                .toList());
+        if (entries.size() > pageSize) {
+            page.setNextCursor(encodeCursor(entries.get(pageSize - 1).getName()));
+        }
+        return page;
+    }
+
+    private String encodeCursor(String name) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidCursorException("Invalid cursor", exception);
+        }
+    }
+
+    private ResourceDto mapEntryToDto(String folder, ResourceEntry entry) {
+        if (entry.isFile()) {
+            return fileService.mapFileToDto(folder + entry.getName(), entry.getSize());
+        }
+        return mapFolderEntryToDto(folder + entry.getName(), entry);
+    }
+
+    /**
+     * Folder aggregates are included if they are known
+     */
+    private ResourceDto mapFolderEntryToDto(String key, ResourceEntry entry) {
+        ResourceDto resourceDto = folderService.mapFolderToDto(key);
+        resourceDto.setSize(entry.getTotalSize());
+        resourceDto.setFileCount(entry.getFileCount());
+        if (entry.getContentModified() != null) {
+            resourceDto.setContentModified(toZonedDateTime(entry.getContentModified()));
         }
+        return resourceDto;
     }
 
     public List<ResourceDto> uploadResources(Long userId, String path, List<MultipartFile> files) throws ResourceNotFoundException, ResourceAlreadyExistsException {
         folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
         try {
-            StatObjectResponse folderInfo = findResourceInfo(redirectToUserRootFolder(userId, path));
-            if (resourcesAlongPathNotExist(folderInfo.object(), files)) {
-                ArrayList<ResourceDto> resources = new ArrayList<>();
-                for (MultipartFile file : files) {
-                    String objectKey = folderInfo.object() + file.getOriginalFilename();
-                    minioService.putObject(objectKey, file);
-                    StatObjectResponse written = findResourceInfo(objectKey);
-                    createNecessaryFolders(folderInfo.object(), objectKey);
-                    resources.add(fileService.mapFileToDto(written.object(), written.size()));
-                }
-                return resources;
+            findResourceInfo(folder);
+        } catch (ResourceNotFoundException exception) {
+            throw new ResourceNotFoundException("Folder to upload files not found", exception);
+        }
+        List<String> conflicts = findConflictingRoots(folder, files.stream()
+                .map(file -> Objects.requireNonNull(file.getOriginalFilename()))
+                .toList());
+        if (!conflicts.isEmpty()) {
+            throw new ResourceAlreadyExistsException("Resource along the path already exists", conflicts);
+        }
+        List<Callable<List<WrittenObject>>> uploads = new ArrayList<>();
+        List<MultipartFile> packableFiles = new ArrayList<>();
+        Set<String> roots = new LinkedHashSet<>();
+        for (MultipartFile file : files) {
+            if (minioService.isPackable(file)) {
+                packableFiles.add(file);
             } else {
-                throw new ResourceAlreadyExistsException("Resource along the path already exists");
+                uploads.add(() -> List.of(uploadFile(folder, file)));
+            }
+            roots.add(folder + folderService.resolveRootElement(file.getOriginalFilename()));
+        }
+        if (!packableFiles.isEmpty()) {
+            uploads.add(() -> minioService.putPackedObjects(packableFiles.stream()
+                    .map(file -> folder + file.getOriginalFilename())
+                    .toList(), packableFiles));
+        }
+        try {
+            Map<String, WrittenObject> written = new HashMap<>();
+            for (List<WrittenObject> objects : uploadTaskRunner.invokeAll(uploads)) {
+                for (WrittenObject object : objects) {
+                    written.put(object.key(), object);
+                }
             }
+            Set<String> folders = createFolders(collectAncestorFolders(folder, written.keySet()));
+            indexUpload(folder, files.stream()
+                    .map(file -> indexedFile(written.get(folder + file.getOriginalFilename()), file.getContentType()))
+                    .toList(), folders);
+            return files.stream()
+                    .map(file -> written.get(folder + file.getOriginalFilename()))
+                    .map(object -> fileService.mapFileToDto(object.key(), object.size()))
+                    .toList();
+        } catch (RuntimeException exception) {
+            removeUploadedRoots(roots);
+            throw exception;
+        }
+    }
+
+    /**
+     * Runs concurrently with other files of the same upload, folders are created for the whole upload afterwards.
+     * Small files may be packed together instead, all of them in one task
+     */
+    private WrittenObject uploadFile(String folder, MultipartFile file) {
+        return minioService.putObject(folder + file.getOriginalFilename(), file);
+    }
+
+    /**
+     * Uploads files while they are read from request body, nothing is spooled locally. Names of files are not known
+     * until they are reached, so conflicts are checked for every file right before its content is written. On conflict
+     * or failure everything uploaded by this call is removed, as if the upload was checked upfront
+     */
+    public List<ResourceDto> uploadResources(Long userId, String path, Iterator<UploadPart> parts) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
+        try {
+            findResourceInfo(folder);
         } catch (ResourceNotFoundException exception) {
             throw new ResourceNotFoundException("Folder to upload files not found", exception);
         }
+        Set<String> uploadedRoots = new LinkedHashSet<>();
+        Set<String> checkedFolders = new HashSet<>();
+        try {
+            List<ResourceDto> resources = new ArrayList<>();
+            while (parts.hasNext()) {
+                UploadPart part = parts.next();
+                String root = folder + folderService.resolveRootElement(part.fileName());
+                if (!uploadedRoots.contains(root)) {
+                    ensureTargetResourceNotExists(root);
+                    uploadedRoots.add(root);
+                }
+                String objectKey = folder + part.fileName();
+                WrittenObject written = minioService.putObject(objectKey, part.content(), Objects.requireNonNullElse(part.contentType(), DEFAULT_CONTENT_TYPE));
+                Set<String> folders = collectAncestorFolders(folder, List.of(objectKey));
+                folders.removeAll(checkedFolders);
+                checkedFolders.addAll(folders);
+                folders = createFolders(folders);
+                indexUpload(folder, List.of(indexedFile(written, part.contentType())), folders);
+                resources.add(fileService.mapFileToDto(written.key(), written.size()));
+            }
+            return resources;
+        } catch (ResourceAlreadyExistsException | RuntimeException exception) {
+            removeUploadedRoots(uploadedRoots);
+            throw exception;
+        }
     }
 
-    private boolean resourcesAlongPathNotExist(String userContextPath, List<MultipartFile> files) {
-        for (MultipartFile file : files) {
-            String objectKey = userContextPath + folderService.resolveRootElement(Objects.requireNonNull(file.getOriginalFilename()));
-            try {
-                findResourceInfo(objectKey);
-                return false;
-            } catch (ResourceNotFoundException ignored) {}
+    /**
+     * Extracts archive entries while the archive is read from request body. Entries up to
+     * {@link UploadProperties#getArchiveEntryBufferSize()} are read into memory and written concurrently with reading
+     * the next ones, bigger entries are written by the reading thread itself. Names in the folder are listed once,
+     * folder markers are created once for all entries after they are written. On conflict or failure everything
+     * extracted by this call is removed
+     *
+     * @param entries folder entries have names ending with "/"
+     */
+    public List<ResourceDto> extractArchive(Long userId, String path, Iterator<UploadPart> entries) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
+        try {
+            findResourceInfo(folder);
+        } catch (ResourceNotFoundException exception) {
+            throw new ResourceNotFoundException("Folder to extract archive not found", exception);
+        }
+        Set<String> existingNames = listNames(folder);
+        Set<String> extractedRoots = new LinkedHashSet<>();
+        List<String> folderKeys = new ArrayList<>();
+        List<String> conflicts = new ArrayList<>();
+        Iterator<Callable<WrittenObject>> extractions = new Iterator<>() {
+
+            private UploadPart next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && conflicts.isEmpty() && entries.hasNext()) {
+                    UploadPart entry = entries.next();
+                    String root = folderService.resolveRootElement(entry.fileName());
+                    if (existingNames.contains(root)) {
+                        conflicts.add(root);
+                    } else if (entry.fileName().endsWith("/")) {
+                        extractedRoots.add(folder + root);
+                        folderKeys.add(folder + entry.fileName());
+                    } else {
+                        extractedRoots.add(folder + root);
+                        next = entry;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Callable<WrittenObject> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                UploadPart entry = next;
+                next = null;
+                return extractEntry(folder + entry.fileName(), entry);
+            }
+        };
+        try {
+            List<WrittenObject> written = uploadTaskRunner.invokeAll(extractions);
+            if (!conflicts.isEmpty()) {
+                throw new ResourceAlreadyExistsException("Resource along the path already exists", conflicts);
+            }
+            List<String> objectKeys = new ArrayList<>(folderKeys);
+            for (WrittenObject object : written) {
+                objectKeys.add(object.key());
+            }
+            Set<String> folders = createFolders(collectAncestorFolders(folder, objectKeys));
+            indexUpload(folder, written.stream()
+                    .map(object -> indexedFile(object, null))
+                    .toList(), folders);
+            return written.stream()
+                    .map(object -> fileService.mapFileToDto(object.key(), object.size()))
+                    .toList();
+        } catch (ResourceAlreadyExistsException | RuntimeException exception) {
+            removeUploadedRoots(extractedRoots);
+            throw exception;
         }
-        return true;
     }
 
-    public List<ResourceDto> findResourcesInfo(Long userId, String prefix) {
-        String path = redirectToUserRootFolder(userId, "");
-        List<ResourceDto> resources = new ArrayList<>();
+    /**
+     * Reads the entry before returning, so the archive can move to the next one. Small entry is written later
+     * by the returned task, a big one is written right away
+     */
+    private Callable<WrittenObject> extractEntry(String objectKey, UploadPart entry) {
+        String contentType = Objects.requireNonNullElse(entry.contentType(), DEFAULT_CONTENT_TYPE);
+        int bufferSize = Math.toIntExact(uploadProperties.getArchiveEntryBufferSize());
+        try {
+            byte[] head = entry.content().readNBytes(bufferSize + 1);
+            if (head.length <= bufferSize) {
+                MultipartFile file = new InMemoryMultipartFile(objectKey, contentType, head);
+                return () -> minioService.putObject(objectKey, file);
+            }
+            WrittenObject written = minioService.putObject(objectKey,
+                    new SequenceInputStream(new ByteArrayInputStream(head), entry.content()), contentType);
+            return () -> written;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Uploads file without its content if the user already has a file with the same SHA-256 and size,
+     * available only with content-addressed storage. Files of other users are not looked at, so nobody can
+     * find out whether someone else stores some content
+     */
+    public ResourceDto uploadResourceByHash(Long userId, String path, String fileName, String hash, long size, String contentType) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
+        try {
+            findResourceInfo(folder);
+        } catch (ResourceNotFoundException exception) {
+            throw new ResourceNotFoundException("Folder to upload files not found", exception);
+        }
+        ensureTargetResourceNotExists(folder + folderService.resolveRootElement(fileName));
+        if (!resourceIndex.containsFile(redirectToUserRootFolder(userId, ""), hash, size)) {
+            throw new ResourceNotFoundException("Content is not stored, upload the file", null);
+        }
+        String objectKey = folder + fileName;
+        WrittenObject written = minioService.putObjectByHash(objectKey, hash, size, Objects.requireNonNullElse(contentType, DEFAULT_CONTENT_TYPE));
+        if (written == null) {
+            throw new ResourceNotFoundException("Content is not stored, upload the file", null);
+        }
+        Set<String> folders = createFolders(collectAncestorFolders(folder, List.of(objectKey)));
+        indexUpload(folder, List.of(indexedFile(written, contentType)), folders);
+        return fileService.mapFileToDto(written.key(), written.size());
+    }
+
+    /**
+     * Starts resumable upload of one file into the folder, conflicts are checked now and again on completion
+     */
+    public UploadSessionDto createUploadSession(Long userId, String path, String fileName, long size, String contentType) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        folderService.ensureFolderPath(path);
+        String folder = redirectToUserRootFolder(userId, path);
+        try {
+            findResourceInfo(folder);
+        } catch (ResourceNotFoundException exception) {
+            throw new ResourceNotFoundException("Folder to upload files not found", exception);
+        }
+        ensureTargetResourceNotExists(folder + folderService.resolveRootElement(fileName));
+        UploadSession session = chunkedUploadService.createSession(userId, folder, folder + fileName,
+                size, Objects.requireNonNullElse(contentType, DEFAULT_CONTENT_TYPE));
+        return mapUploadSessionToDto(session);
+    }
+
+    public UploadSessionDto getUploadSession(Long userId, String id) throws ResourceNotFoundException {
+        return mapUploadSessionToDto(chunkedUploadService.findSession(userId, id));
+    }
+
+    public UploadSessionDto uploadChunk(Long userId, String id, long offset, long length, InputStream content) throws ResourceNotFoundException {
+        UploadSession session = chunkedUploadService.findSession(userId, id);
+        chunkedUploadService.uploadChunk(session, offset, length, content);
+        return mapUploadSessionToDto(session);
+    }
+
+    public ResourceDto completeUploadSession(Long userId, String id) throws ResourceNotFoundException, ResourceAlreadyExistsException {
+        UploadSession session = chunkedUploadService.findSession(userId, id);
+        String fileName = session.getObjectKey().substring(session.getFolder().length());
+        ensureTargetResourceNotExists(session.getFolder() + folderService.resolveRootElement(fileName));
+        WrittenObject written = chunkedUploadService.completeSession(session);
+        Set<String> folders = createFolders(collectAncestorFolders(session.getFolder(), List.of(session.getObjectKey())));
+        indexUpload(session.getFolder(), List.of(indexedFile(written, session.getContentType())), folders);
+        return fileService.mapFileToDto(written.key(), written.size());
+    }
+
+    public void abortUploadSession(Long userId, String id) throws ResourceNotFoundException {
+        chunkedUploadService.abortSession(chunkedUploadService.findSession(userId, id));
+    }
+
+    private UploadSessionDto mapUploadSessionToDto(UploadSession session) {
+        ResourceDto file = fileService.mapFileToDto(session.getObjectKey(), session.getSize());
+        UploadSessionDto sessionDto = new UploadSessionDto();
+        sessionDto.setId(session.getId());
+        sessionDto.setPath(file.getPath());
+        sessionDto.setName(file.getName());
+        sessionDto.setSize(session.getSize());
+        sessionDto.setChunkSize(session.getChunkSize());
+        sessionDto.setExpiresAt(session.getExpiresAt());
+        List<UploadSessionDto.ByteRange> received = new ArrayList<>();
+        for (long[] range : session.getReceivedRanges()) {
+            UploadSessionDto.ByteRange byteRange = new UploadSessionDto.ByteRange();
+            byteRange.setStart(range[0]);
+            byteRange.setEnd(range[1]);
+            received.add(byteRange);
+        }
+        sessionDto.setReceived(received);
+        return sessionDto;
+    }
+
+    private void removeUploadedRoots(Set<String> roots) {
+        for (String root : roots) {
+            if (getResourceType(root) == ResourceType.FOLDER) {
+                minioService.removeObjectsFrom(root);
+            } else {
+                minioService.removeObject(root);
+            }
+            updateIndex(() -> resourceIndex.remove(root), resolveParentFolder(root));
+        }
+    }
+
+    /**
+     * Lists the folder once instead of checking every uploaded file separately
+     *
+     * @return root elements of uploaded files which already exist in the folder, e.g. "file.txt" or "dir/"
+     */
+    private List<String> findConflictingRoots(String folder, List<String> fileNames) throws ResourceNotFoundException {
+        Set<String> roots = new LinkedHashSet<>();
+        for (String fileName : fileNames) {
+            roots.add(folderService.resolveRootElement(fileName));
+        }
+        Set<String> existingNames = listNames(folder);
+        return roots.stream()
+                .filter(existingNames::contains)
+                .toList();
+    }
 
-        for (Result<Item> result : minioService.listObjects(path, true)) {
+    /**
+     * @return names of files and folders directly inside the folder, folder names end with "/"
+     */
+    private Set<String> listNames(String folder) throws ResourceNotFoundException {
+        Set<String> names = new HashSet<>();
+        for (ResourceEntry entry : listFolder(folder, findResourceInfo(folder))) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Children of a listed folder are served by one index range scan. Other folders are listed from MinIO once,
+     * their children are indexed and they become listed
+     */
+    private List<ResourceEntry> listFolder(String folder, ResourceEntry folderEntry) {
+        if (folderEntry.isListed()) {
+            return resourceIndex.list(folder);
+        }
+        List<ResourceEntry> children = new ArrayList<>();
+        Instant listedAt = Instant.now();
+        for (Result<Item> result : minioService.listObjects(folder, false)) {
             try {
                 Item item = result.get();
-                String resourceInfo = item.objectName();
-                String[] names = resourceInfo.split("/");
-                for (String name : names) {
-                    if (name.startsWith(prefix)) {
-                        if (getResourceType(resourceInfo) == ResourceType.FILE) {
-                            resources.add(fileService.mapFileToDto(resourceInfo, item.size()));
-                        } else {
-                            resources.add(folderService.mapFolderToDto(resourceInfo));
-                        }
-                        break;
-                    }
+                if (!item.objectName().equals(folder)) {
+                    children.add(toEntry(item));
                 }
             } catch (Exception exception) {
                 throw new RuntimeException(exception);
             }
         }
-        return resources;
+        resourceIndex.putListedFolder(folderEntry, children, listedAt);
+        return children;
+    }
+
+    /**
+     * Children after the given name read from MinIO without indexing them. The listing starts after the key
+     * of that name, a folder name comes back once more if the listing resumes inside it, so it is skipped
+     */
+    private List<ResourceEntry> listFolderPage(String folder, String after, int limit) {
+        String startAfter = folder + after;
+        List<ResourceEntry> children = new ArrayList<>();
+        for (Result<Item> result : minioService.listObjects(folder, startAfter, false)) {
+            try {
+                Item item = result.get();
+                if (!item.objectName().equals(startAfter)) {
+                    children.add(toEntry(item));
+                }
+            } catch (Exception exception) {
+                throw new RuntimeException(exception);
+            }
+            if (children.size() == limit) {
+                break;
+            }
+        }
+        return children;
     }
 
-    private List<ResourceDto> findFolderContents(String path) {
+    private ResourceEntry toEntry(Item item) {
+        Instant lastModified = item.lastModified() == null ? Instant.now() : item.lastModified().toInstant();
+        if (item.objectName().endsWith("/")) {
+            return resourceIndex.folder(item.objectName(), false, lastModified);
+        }
+        return resourceIndex.file(item.objectName(), minioService.sizeOf(item), minioService.etagOf(item), null, lastModified);
+    }
+
+    /**
+     * Searches names of files and folders in the index. The tree of the user is listed recursively from MinIO
+     * only while some of its folders are not listed, e.g. on the first search
+     *
+     * @param limit maximum number of results, the configured default if null
+     */
+    public List<ResourceDto> findResourcesInfo(Long userId, String query, Integer limit) {
+        String root = redirectToUserRootFolder(userId, "");
+        if (!resourceIndex.isTreeListed(root)) {
+            indexTree(root, entry -> {});
+        }
         List<ResourceDto> resources = new ArrayList<>();
-        for (Result<Item> result : minioService.listObjects(path, false)) {
+        for (ResourceEntry entry : resourceIndex.search(root, query, resolveSearchLimit(limit))) {
+            resources.add(mapEntryToDto(root + entry.getParentPath(), entry));
+        }
+        return resources;
+    }
+
+    /**
+     * Passes matches to the consumer as soon as they are found, the most relevant first. If the tree of the user
+     * is not listed yet, matches are passed while it is listed from MinIO, in byte order of paths. This method returns
+     * at the limit or after the configured search timeout, the listing is completed in the background, so later
+     * searches use the index
+     *
+     * @param limit maximum number of results, the configured default if null
+     * @return true if results were cut by limit or timeout, so more matches may exist
+     */
+    public boolean streamResourcesInfo(Long userId, String query, Integer limit, Consumer<ResourceDto> consumer) {
+        String root = redirectToUserRootFolder(userId, "");
+        StreamedSearch search = new StreamedSearch(root, query, resolveSearchLimit(limit),
+                Instant.now().plus(searchProperties.getTimeout()), consumer);
+        if (!resourceIndex.isTreeListed(root)) {
+            streamListedMatches(root, search);
+            return search.truncated;
+        }
+        for (ResourceEntry entry : resourceIndex.search(root, query, search.limit + 1)) {
+            search.offer(entry);
+        }
+        return search.truncated;
+    }
+
+    /**
+     * The tree is listed and indexed in the background, matches are handed over to the calling thread, which
+     * returns at the limit or the deadline. If the consumer fails, e.g. the client is gone, nothing more is passed
+     * and the failure is thrown, the listing is completed either way
+     */
+    private void streamListedMatches(String root, StreamedSearch search) {
+        BlockingQueue<ResourceEntry> matches = new LinkedBlockingQueue<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        treeIndexExecutor.execute(() -> {
+            try {
+                indexTree(root, entry -> {
+                    if (!stopped.get() && search.matches(entry)) {
+                        matches.add(entry);
+                    }
+                });
+            } finally {
+                matches.add(LISTING_END);
+            }
+        });
+        try {
+            while (true) {
+                ResourceEntry match = matches.poll(Math.max(0, Duration.between(Instant.now(), search.deadline).toMillis()),
+                        TimeUnit.MILLISECONDS);
+                if (match == LISTING_END) {
+                    return;
+                }
+                if (match == null || search.passed == search.limit) {
+                    search.truncated = true;
+                    return;
+                }
+                search.offer(match);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            search.truncated = true;
+        } finally {
+            stopped.set(true);
+        }
+    }
+
+    private int resolveSearchLimit(Integer limit) {
+        return Math.max(1, Math.min(Objects.requireNonNullElse(limit, searchProperties.getDefaultLimit()),
+                searchProperties.getMaxLimit()));
+    }
+
+    /**
+     * Every node schedules reconciliation, only the one which claims the run reconciles
+     */
+    @Scheduled(initialDelayString = "${storage.index.reconcile-interval}",
+            fixedDelayString = "${storage.index.reconcile-interval}")
+    public void reconcileFolderTotalsOnce() {
+        if (resourceIndex.claimReconciliation(indexProperties.getReconcileInterval())) {
+            reconcileFolderTotals();
+        }
+    }
+
+    /**
+     * Recomputes folder aggregates of every indexed user. Aggregates are known only if every file of the user
+     * is indexed, so trees which are not listed yet are listed from MinIO, which recomputes them as well
+     */
+    public void reconcileFolderTotals() {
+        for (Long userId : resourceIndex.findUserIds()) {
+            String root = redirectToUserRootFolder(userId, "");
+            if (resourceIndex.isTreeListed(root)) {
+                resourceIndex.recomputeTotals(userId);
+            } else {
+                indexTree(root, entry -> {});
+            }
+        }
+    }
+
+    /**
+     * Folders without marker objects are indexed too, they are listed by MinIO anyway.
+     * Every new entry is passed to the consumer before the tree is indexed, ancestors before descendants
+     */
+    private void indexTree(String root, Consumer<ResourceEntry> consumer) {
+        Map<String, ResourceEntry> entries = new HashMap<>();
+        Instant now = Instant.now();
+        entries.put(root, resourceIndex.folder(root, true, now));
+        for (Result<Item> result : minioService.listObjects(root, true)) {
             try {
-                Item resourceInfo = result.get();
-                if (resourceInfo.objectName().equals(path)) {
-                    continue;
+                Item item = result.get();
+                String key = item.objectName();
+                for (int end = key.indexOf('/', root.length()); end >= 0 && end < key.length() - 1; end = key.indexOf('/', end + 1)) {
+                    String ancestor = key.substring(0, end + 1);
+                    if (!entries.containsKey(ancestor)) {
+                        ResourceEntry folder = resourceIndex.folder(ancestor, true, now);
+                        entries.put(ancestor, folder);
+                        consumer.accept(folder);
+                    }
                 }
-                if (resourceInfo.objectName().endsWith("/")) {
-                    resources.add(folderService.mapFolderToDto(resourceInfo.objectName()));
-                } else {
-                    resources.add(fileService.mapFileToDto(resourceInfo.objectName(), resourceInfo.size()));
+                Instant lastModified = item.lastModified() == null ? now : item.lastModified().toInstant();
+                ResourceEntry entry = key.endsWith("/")
+                        ? resourceIndex.folder(key, true, lastModified)
+                        : resourceIndex.file(key, minioService.sizeOf(item), minioService.etagOf(item), null, lastModified);
+                if (entries.put(key, entry) == null) {
+                    consumer.accept(entry);
                 }
             } catch (Exception exception) {
                 throw new RuntimeException(exception);
             }
         }
-        return resources;
+        resourceIndex.putListedTree(root, new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Matches which are passed to the consumer, counted against limit and timeout
+     */
+    private class StreamedSearch {
+
+        private final String root;
+
+        private final String query;
+
+        private final int limit;
+
+        private final Instant deadline;
+
+        private final Consumer<ResourceDto> consumer;
+
+        private int passed;
+
+        private boolean truncated;
+
+        private StreamedSearch(String root, String query, int limit, Instant deadline, Consumer<ResourceDto> consumer) {
+            this.root = root;
+            this.query = query.toLowerCase(Locale.ROOT);
+            this.limit = limit;
+            this.deadline = deadline;
+            this.consumer = consumer;
+        }
+
+        /**
+         * Entry of the index search, which already matches the query
+         */
+        private void offer(ResourceEntry entry) {
+            if (truncated) {
+                return;
+            }
+            if (passed == limit || Instant.now().isAfter(deadline)) {
+                truncated = true;
+                return;
+            }
+            passed++;
+            consumer.accept(mapEntryToDto(root + entry.getParentPath(), entry));
+        }
+
+        /**
+         * Entry listed from MinIO, it is matched the same way as the index matches names
+         */
+        private boolean matches(ResourceEntry entry) {
+            String name = entry.getName();
+            if (name.isEmpty()) {
+                return false;
+            }
+            String searchedName = entry.isFile() ? name : name.substring(0, name.length() - 1);
+            return searchedName.toLowerCase(Locale.ROOT).contains(query);
+        }
+
     }
 
     public ResourceDto moveResource(Long userId, String from, String to) throws ResourceNotFoundException, ResourceAlreadyExistsException {
@@ -140,18 +777,20 @@ public class ResourceService {
         to = redirectToUserRootFolder(userId, to);
         from = redirectToUserRootFolder(userId, from);
 
-        ensureSrcResourceExists(from);
+        ResourceEntry sourceEntry = ensureSrcResourceExists(from);
         ensureParentFolderExists(to);
         ensureTargetResourceNotExists(to);
 
+        String source = from;
+        String target = to;
         if (getResourceType(from) == ResourceType.FILE) {
-            fileService.moveFile(from, to);
-            StatObjectResponse moved = findResourceInfo(to);
-            return fileService.mapFileToDto(moved.object(), moved.size());
+            List<WrittenObject> copies = fileService.moveFile(from, to);
+            updateIndex(() -> resourceIndex.move(source, target, copies), resolveParentFolder(from), resolveParentFolder(to));
+            return fileService.mapFileToDto(to, sourceEntry.getSize());
         } else {
-            folderService.moveFolder(from, to);
-            StatObjectResponse moved = findResourceInfo(to);
-            return folderService.mapFolderToDto(moved.object());
+            List<WrittenObject> copies = folderService.moveFolder(from, to);
+            updateIndex(() -> resourceIndex.move(source, target, copies), resolveParentFolder(from), resolveParentFolder(to));
+            return folderService.mapFolderToDto(to);
         }
     }
 
@@ -178,8 +817,8 @@ public class ResourceService {
         }
     }
 
-    private void ensureSrcResourceExists(String from) throws ResourceNotFoundException {
-        findResourceInfo(from);
+    private ResourceEntry ensureSrcResourceExists(String from) throws ResourceNotFoundException {
+        return findResourceInfo(from);
     }
 
     private void ensureTargetResourceNotExists(String to) throws ResourceAlreadyExistsException {
@@ -189,22 +828,168 @@ public class ResourceService {
         } catch (ResourceNotFoundException ignored) {}
     }
 
-    private void createNecessaryFolders(String unnecessaryPart, String path) {
-        String[] names = path.substring(unnecessaryPart.length()).split("/");
-        StringBuilder folder = new StringBuilder(unnecessaryPart);
-        for (int i = 0; i < names.length - 1; i++) {
-            folder.append(names[i]).append("/");
-            folderService.createFolder(folder.toString());
+    /**
+     * Distinct folders between the upload folder and uploaded objects, the upload folder itself is excluded
+     */
+    private Set<String> collectAncestorFolders(String uploadFolder, Collection<String> objectKeys) {
+        Set<String> folders = new LinkedHashSet<>();
+        for (String objectKey : objectKeys) {
+            int end = objectKey.indexOf('/', uploadFolder.length());
+            while (end != -1) {
+                folders.add(objectKey.substring(0, end + 1));
+                end = objectKey.indexOf('/', end + 1);
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Markers are created once per folder and in parallel, only for folders which don't exist yet. Folders between
+     * the upload folder and roots of uploaded resources may exist, the check of roots does not cover them
+     *
+     * @return folders which were created, in order of the given ones
+     */
+    private Set<String> createFolders(Set<String> folders) {
+        List<Callable<String>> creations = new ArrayList<>();
+        for (String folder : folders) {
+            creations.add(() -> {
+                if (folderExists(folder)) {
+                    return null;
+                }
+                folderService.createFolder(folder);
+                return folder;
+            });
+        }
+        Set<String> created = new LinkedHashSet<>();
+        for (String folder : uploadTaskRunner.invokeAll(creations)) {
+            if (folder != null) {
+                created.add(folder);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * MinIO is asked only if the folder is not indexed and its parent is not listed
+     */
+    private boolean folderExists(String folder) {
+        if (resourceIndex.find(folder).isPresent()) {
+            return true;
+        }
+        if (resourceIndex.isParentListed(folder)) {
+            return false;
+        }
+        try {
+            minioService.statObject(folder);
+            return true;
+        } catch (ResourceNotFoundException exception) {
+            return false;
+        }
+    }
+
+    public DownloadableResource getDownloadableResource(Long userId, String path) throws ResourceNotFoundException {
+        String key = redirectToUserRootFolder(userId, path);
+        ResourceEntry resourceInfo = findResourceInfo(key);
+        DownloadableResource resource = createDownloadableResource(key, path);
+        if (resourceInfo.isFile()) {
+            if (resourceInfo.getContentType() == null) {
+                resourceInfo = indexResourceInfo(key);
+            }
+            resource.setSize(resourceInfo.getSize());
+            resource.setEtag(resourceInfo.getEtag());
+            resource.setLastModified(toZonedDateTime(resourceInfo.getLastModified()));
+            resource.setContentType(resourceInfo.getContentType());
+        }
+        else if (downloadProperties.isResumableArchives()) {
+            ResumableZipArchiver.Archive archive = folderService.createResumableArchive(key);
+            resource.setArchive(archive);
+            resource.setSize(archive.getLength());
+            resource.setEtag(archive.getEtag());
+            resource.setLastModified(archive.getLastModified());
+        }
+        return resource;
+    }
+
+    private DownloadableResource createDownloadableResource(String key, String path) {
+        DownloadableResource resource = new DownloadableResource();
+        resource.setObjectKey(key);
+        resource.setName(resolveDownloadedResourceName(path));
+        return resource;
+    }
+
+    /**
+     * Duplicated paths are downloaded once. Paths inside selected folders are left out, they are downloaded
+     * as part of the folder. Resources are only checked to exist: all of them are zipped by their keys,
+     * so no archive is laid out and no file is described
+     */
+    public List<DownloadableResource> getDownloadableResources(Long userId, List<String> paths) throws ResourceNotFoundException {
+        Set<String> selected = new LinkedHashSet<>(paths);
+        List<DownloadableResource> resources = new ArrayList<>();
+        for (String path : selected) {
+            if (!isInsideSelectedFolder(path, selected)) {
+                String key = redirectToUserRootFolder(userId, path);
+                findResourceInfo(key);
+                resources.add(createDownloadableResource(key, path));
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Ancestors of "a/b/c" are "a/b/", "a/" and the root folder ""
+     */
+    private boolean isInsideSelectedFolder(String path, Set<String> selected) {
+        if (path.isEmpty()) {
+            return false;
+        }
+        for (int end = path.lastIndexOf('/', path.length() - 2); end >= 0; end = path.lastIndexOf('/', end - 1)) {
+            if (selected.contains(path.substring(0, end + 1))) {
+                return true;
+            }
+        }
+        return selected.contains("");
+    }
+
+    /**
+     * Writes all resources into one zip archive, every resource is placed at the archive root
+     */
+    public void writeResourcesZipped(List<DownloadableResource> resources, OutputStream out) throws IOException {
+        List<String> keys = resources.stream()
+                .map(DownloadableResource::getObjectKey)
+                .toList();
+        folderService.writeZipped(keys, out);
+    }
+
+    public void writeResourceBinaryContent(DownloadableResource resource, OutputStream out) throws IOException {
+        if (resource.isFile()) {
+            fileService.writeFileBinaryContent(resource.getObjectKey(), out);
+        }
+        else if (resource.getArchive() != null) {
+            resource.getArchive().write(0, resource.getArchive().getLength(), out);
         }
+        else {
+            folderService.writeFolderBinaryContentZipped(resource.getObjectKey(), out);
+        }
+    }
+
+    /**
+     * Short-lived URL to download file directly from MinIO, supported for files only
+     *
+     * @return null if the file can't be downloaded from MinIO directly
+     */
+    public String getPresignedDownloadUrl(DownloadableResource resource, Duration expiry) {
+        return fileService.getPresignedDownloadUrl(resource.getObjectKey(), resource.getName(), expiry);
     }
 
-    public byte[] getResourceBinaryContent(Long userId, String path) throws ResourceNotFoundException, IOException {
-        StatObjectResponse resourceInfo = findResourceInfo(redirectToUserRootFolder(userId, path));
-        if (getResourceType(resourceInfo.object()) == ResourceType.FILE) {
-            return fileService.getFileBinaryContent(resourceInfo.object());
+    /**
+     * Writes only specified byte range of the resource, supported for files and resumable folder archives
+     */
+    public void writeResourceBinaryContent(DownloadableResource resource, long offset, long length, OutputStream out) throws IOException {
+        if (resource.getArchive() != null) {
+            resource.getArchive().write(offset, length, out);
         }
         else {
-            return folderService.getFolderBinaryContentZipped(resourceInfo.object());
+            fileService.writeFileBinaryContent(resource.getObjectKey(), offset, length, out);
         }
     }
 
@@ -217,48 +1002,140 @@ public class ResourceService {
     }
 
     public ResourceDto getResourceInfo(Long userId, String path) throws ResourceNotFoundException {
-        StatObjectResponse resourceInfo = findResourceInfo(redirectToUserRootFolder(userId, path));
-        if (getResourceType(resourceInfo.object()) == ResourceType.FILE) {
-            return fileService.mapFileToDto(resourceInfo.object(), resourceInfo.size());
+        String key = redirectToUserRootFolder(userId, path);
+        ResourceEntry resourceInfo = findResourceInfo(key);
+        ResourceDto resourceDto;
+        if (resourceInfo.isFile()) {
+            resourceDto = fileService.mapFileToDto(key, resourceInfo.getSize());
         }
         else {
-            return folderService.mapFolderToDto(resourceInfo.object());
+            resourceDto = mapFolderEntryToDto(key, resourceInfo);
         }
+        resourceDto.setEtag(resourceInfo.getEtag());
+        resourceDto.setLastModified(toZonedDateTime(resourceInfo.getLastModified()));
+        return resourceDto;
     }
 
     public void removeResource(Long userId, String path) throws ResourceNotFoundException {
-        StatObjectResponse resourceInfo = findResourceInfo(redirectToUserRootFolder(userId, path));
-        if (getResourceType(resourceInfo.object()) == ResourceType.FILE) {
-            minioService.removeObject(resourceInfo.object());
+        String key = redirectToUserRootFolder(userId, path);
+        findResourceInfo(key);
+        if (getResourceType(key) == ResourceType.FILE) {
+            minioService.removeObject(key);
         }
         else {
-            if (folderService.pathHasObjectsInside(resourceInfo.object())) {
-                minioService.removeObjectsFrom(resourceInfo.object());
-                minioService.removeObject(resourceInfo.object());
+            if (folderService.pathHasObjectsInside(key)) {
+                minioService.removeObjectsFrom(key);
+                minioService.removeObject(key);
             }
             else {
-                minioService.removeObject(resourceInfo.object());
+                minioService.removeObject(key);
             }
         }
+        updateIndex(() -> resourceIndex.remove(key), path.isEmpty() ? key : resolveParentFolder(key));
     }
 
-    private StatObjectResponse findResourceInfo(String path) throws ResourceNotFoundException {
+    /**
+     * Index is written after MinIO. If that fails, the folders the change was made in are unlisted,
+     * so they are listed from MinIO again instead of serving what the index has
+     */
+    private void updateIndex(Runnable update, String... folders) {
         try {
-            return minioService.statObject(path);
-        } catch (ResourceNotFoundException exception) {
-            if (getResourceType(path) == ResourceType.FILE) {
-                throw new ResourceNotFoundException("File does not exist", exception);
+            update.run();
+        } catch (RuntimeException exception) {
+            for (String folder : folders) {
+                try {
+                    resourceIndex.unlist(folder);
+                } catch (RuntimeException unlistException) {
+                    exception.addSuppressed(unlistException);
+                }
             }
-            else {
-                throw new ResourceNotFoundException("Directory does not exist", exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Served from the index. MinIO is asked only if the resource is not indexed and its folder is not listed,
+     * then the resource is indexed
+     */
+    private ResourceEntry findResourceInfo(String path) throws ResourceNotFoundException {
+        Optional<ResourceEntry> entry = resourceIndex.find(path);
+        if (entry.isPresent()) {
+            return entry.get();
+        }
+        ResourceNotFoundException cause = null;
+        if (!resourceIndex.isParentListed(path)) {
+            try {
+                return indexResourceInfo(path);
+            } catch (ResourceNotFoundException exception) {
+                cause = exception;
+            }
+        }
+        if (getResourceType(path) == ResourceType.FILE) {
+            throw new ResourceNotFoundException("File does not exist", cause);
+        }
+        else {
+            throw new ResourceNotFoundException("Directory does not exist", cause);
+        }
+    }
+
+    /**
+     * Marker of the user root folder is created by the first request which misses it
+     */
+    private ResourceEntry indexResourceInfo(String path) throws ResourceNotFoundException {
+        ObjectStat stat;
+        try {
+            stat = minioService.statObject(path);
+        } catch (ResourceNotFoundException exception) {
+            if (!isUserRootFolder(path)) {
+                throw exception;
             }
+            folderService.createFolder(path);
+            stat = minioService.statObject(path);
+        }
+        ResourceEntry entry;
+        if (getResourceType(path) == ResourceType.FILE) {
+            entry = resourceIndex.file(path, stat.size(), stat.etag(), stat.contentType(), stat.lastModified());
+        }
+        else {
+            entry = resourceIndex.folder(path, false, stat.lastModified());
+        }
+        resourceIndex.put(List.of(entry));
+        return entry;
+    }
+
+    /**
+     * Upload indexes written files together with folders created for them. The folders are new,
+     * all their children are written by the same upload, so they are listed
+     *
+     * @param uploadFolder folder the upload was made to
+     */
+    private void indexUpload(String uploadFolder, List<ResourceEntry> files, Collection<String> folders) {
+        List<ResourceEntry> entries = new ArrayList<>(files);
+        Instant now = Instant.now();
+        for (String folder : folders) {
+            entries.add(resourceIndex.emptyFolder(folder, now));
         }
+        updateIndex(() -> resourceIndex.putWritten(entries), uploadFolder);
+    }
+
+    private ResourceEntry indexedFile(WrittenObject written, String contentType) {
+        return resourceIndex.file(written.key(), written.size(), written.etag(),
+                Objects.requireNonNullElse(contentType, DEFAULT_CONTENT_TYPE), Instant.now());
+    }
+
+    private ZonedDateTime toZonedDateTime(Instant instant) {
+        return ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
     }
 
     private String redirectToUserRootFolder(Long userId, String path) {
-        String userFolder = String.format("user-%d-files/", userId);
-        folderService.createFolder(userFolder);
-        return userFolder + path;
+        return String.format("user-%d-files/", userId) + path;
+    }
+
+    /**
+     * Every key is inside a user root folder, so the only folder key with one "/" is the root
+     */
+    private boolean isUserRootFolder(String key) {
+        return key.indexOf('/') == key.length() - 1;
     }
 
     private ResourceType getResourceType(String path) {
@@ -0,0 +1,417 @@
+package edu.example.project.service;
+
+import edu.example.project.config.DownloadProperties;
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Builds zip archives of folders which are the same byte for byte as long as the folder listing is the same:
+ * entries are STORED in listing order with timestamps of objects. Sizes of all records are known from the listing,
+ * so archive length is known upfront and any byte range of it can be written without producing preceding bytes.
+ * CRCs and sizes are written to local headers, so plain streaming readers can unpack the archive. CRCs are taken
+ * from {@link ZipCrcCache}, where uploads save them, or computed by reading the object, all reads are pinned to etags
+ * from the listing
+ */
+@Component
+@RequiredArgsConstructor
+public class ResumableZipArchiver {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+
+    private static final int ZIP64_END_LENGTH = 56;
+
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+
+    private static final int END_LENGTH = 22;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+
+    private static final short VERSION_DEFAULT = 20;
+
+    private static final short VERSION_ZIP64 = 45;
+
+    /**
+     * Names are UTF-8
+     */
+    private static final short FLAGS = 0x0800;
+
+    private static final short METHOD_STORED = 0;
+
+    private static final int DOS_DIRECTORY_ATTRIBUTE = 0x10;
+
+    /**
+     * 1980-01-01 00:00, the earliest time DOS format can hold
+     */
+    private static final long DOS_TIME_MINIMUM = (1 << 21) | (1 << 16);
+
+    private final MinioService minioService;
+
+    private final ZipCrcCache crcCache;
+
+    private final DownloadProperties downloadProperties;
+
+    /**
+     * Lists the folder once and lays out the archive, nothing is read from objects yet
+     */
+    protected Archive createArchive(String path, String rootName) {
+        List<Entry> entries = new ArrayList<>();
+        MessageDigest digest = createDigest();
+        ZonedDateTime lastModified = null;
+        long offset = 0;
+        try {
+            for (Result<Item> result : minioService.listObjects(path, true)) {
+                Item item = result.get();
+                String name = rootName + item.objectName().substring(path.length());
+                long size = minioService.sizeOf(item);
+                String etag = minioService.etagOf(item);
+                Entry entry = new Entry(item.objectName(), name.getBytes(StandardCharsets.UTF_8), size,
+                        etag, toDosTime(item.lastModified()), offset);
+                entries.add(entry);
+                offset = entry.nextOffset();
+                digest.update((item.objectName() + "\n" + etag + "\n" + size + "\n").getBytes(StandardCharsets.UTF_8));
+                if (lastModified == null || item.lastModified().isAfter(lastModified)) {
+                    lastModified = item.lastModified();
+                }
+            }
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+        digest.update(rootName.getBytes(StandardCharsets.UTF_8));
+        return new Archive(entries, offset, HexFormat.of().formatHex(digest.digest(), 0, 16), lastModified);
+    }
+
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private static long toDosTime(ZonedDateTime time) {
+        ZonedDateTime utc = time.withZoneSameInstant(ZoneOffset.UTC);
+        if (utc.getYear() < 1980) {
+            return DOS_TIME_MINIMUM;
+        }
+        return (long) (utc.getYear() - 1980) << 25 | (long) utc.getMonthValue() << 21 | (long) utc.getDayOfMonth() << 16
+                | (long) utc.getHour() << 11 | (long) utc.getMinute() << 5 | utc.getSecond() >> 1;
+    }
+
+    private record Entry(String key, byte[] name, long size, String etag, long dosTime, long offset) {
+
+        boolean isFolder() {
+            return key.endsWith("/");
+        }
+
+        boolean hasZip64Size() {
+            return size >= ZIP64_MAGIC;
+        }
+
+        boolean hasZip64Offset() {
+            return offset >= ZIP64_MAGIC;
+        }
+
+        int localHeaderLength() {
+            return LOCAL_HEADER_LENGTH + name.length + (hasZip64Size() ? 20 : 0);
+        }
+
+        long dataOffset() {
+            return offset + localHeaderLength();
+        }
+
+        long nextOffset() {
+            return dataOffset() + size;
+        }
+
+        int centralExtraLength() {
+            int fieldsLength = (hasZip64Size() ? 16 : 0) + (hasZip64Offset() ? 8 : 0);
+            return fieldsLength == 0 ? 0 : 4 + fieldsLength;
+        }
+
+        int centralHeaderLength() {
+            return CENTRAL_HEADER_LENGTH + name.length + centralExtraLength();
+        }
+
+    }
+
+    /**
+     * Laid out archive, writes are not thread safe
+     */
+    public class Archive {
+
+        private final List<Entry> entries;
+
+        private final long[] crcs;
+
+        private final boolean[] knownCrcs;
+
+        private final long centralDirectoryOffset;
+
+        private final long centralDirectoryLength;
+
+        private final boolean zip64End;
+
+        @Getter
+        private final long length;
+
+        @Getter
+        private final String etag;
+
+        /**
+         * null for empty archive
+         */
+        @Getter
+        private final ZonedDateTime lastModified;
+
+        private Archive(List<Entry> entries, long centralDirectoryOffset, String etag, ZonedDateTime lastModified) {
+            this.entries = entries;
+            this.crcs = new long[entries.size()];
+            this.knownCrcs = new boolean[entries.size()];
+            this.centralDirectoryOffset = centralDirectoryOffset;
+            this.centralDirectoryLength = entries.stream().mapToLong(Entry::centralHeaderLength).sum();
+            this.zip64End = entries.size() >= ZIP64_MAGIC_COUNT
+                    || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectoryLength >= ZIP64_MAGIC;
+            this.length = centralDirectoryOffset + centralDirectoryLength
+                    + (zip64End ? ZIP64_END_LENGTH + ZIP64_LOCATOR_LENGTH : 0) + END_LENGTH;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Writes length bytes of the archive starting from offset
+         */
+        public void write(long offset, long length, OutputStream out) throws IOException {
+            long end = offset + length;
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.nextOffset() <= offset) {
+                    continue;
+                }
+                if (entry.offset() >= end) {
+                    break;
+                }
+                if (entry.dataOffset() > offset) {
+                    writeSlice(createLocalHeader(entry, resolveCrc(i)), entry.offset(), offset, end, out);
+                }
+                writeData(i, offset, end, out);
+            }
+            long position = centralDirectoryOffset;
+            for (int i = 0; i < entries.size() && position < end; i++) {
+                Entry entry = entries.get(i);
+                if (position + entry.centralHeaderLength() > offset) {
+                    writeSlice(createCentralHeader(entry, resolveCrc(i)), position, offset, end, out);
+                }
+                position += entry.centralHeaderLength();
+            }
+            if (position < end) {
+                writeSlice(createEndRecords(), position, offset, end, out);
+            }
+        }
+
+        /**
+         * Entry resumed in the middle is read from the beginning only if its CRC is needed by the central directory
+         * further in the range and is not cached, otherwise only the requested bytes are fetched
+         */
+        private void writeData(int index, long start, long end, OutputStream out) throws IOException {
+            Entry entry = entries.get(index);
+            long from = Math.max(start, entry.dataOffset()) - entry.dataOffset();
+            long to = Math.min(end, entry.nextOffset()) - entry.dataOffset();
+            if (from >= to) {
+                return;
+            }
+            if (end > centralDirectoryOffset && !findKnownCrc(index)) {
+                saveCrc(index, copyWithCrc(entry, from, to, out));
+            } else {
+                minioService.writeObject(entry.key(), entry.etag(), from, to - from, out);
+            }
+        }
+
+        /**
+         * Object without cached CRC is read once just for it. Uploads cache CRCs of what they write, so only
+         * objects written otherwise, like chunked uploads, or expired from the cache are read twice
+         */
+        private long resolveCrc(int index) throws IOException {
+            if (!findKnownCrc(index)) {
+                saveCrc(index, copyWithCrc(entries.get(index), 0, 0, OutputStream.nullOutputStream()));
+            }
+            return crcs[index];
+        }
+
+        private boolean findKnownCrc(int index) {
+            if (!knownCrcs[index]) {
+                Entry entry = entries.get(index);
+                Long crc = entry.size() == 0 ? Long.valueOf(0) : crcCache.find(entry.etag(), entry.size());
+                if (crc != null) {
+                    crcs[index] = crc;
+                    knownCrcs[index] = true;
+                }
+            }
+            return knownCrcs[index];
+        }
+
+        private void saveCrc(int index, long crc) {
+            Entry entry = entries.get(index);
+            crcCache.save(entry.etag(), entry.size(), crc);
+            crcs[index] = crc;
+            knownCrcs[index] = true;
+        }
+
+        /**
+         * Reads the whole object and writes only its bytes from the given range
+         */
+        private long copyWithCrc(Entry entry, long from, long to, OutputStream out) throws IOException {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[downloadProperties.getBufferSize()];
+            long position = 0;
+            try (InputStream in = minioService.getObject(entry.key(), entry.etag(), 0, null)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    long writeFrom = Math.max(position, from);
+                    long writeTo = Math.min(position + read, to);
+                    if (writeFrom < writeTo) {
+                        out.write(buffer, (int) (writeFrom - position), (int) (writeTo - writeFrom));
+                    }
+                    position += read;
+                }
+            }
+            if (position != entry.size()) {
+                throw new IOException("Object " + entry.key() + " was changed while being archived");
+            }
+            return crc.getValue();
+        }
+
+        private void writeSlice(byte[] bytes, long bytesOffset, long start, long end, OutputStream out) throws IOException {
+            long from = Math.max(start, bytesOffset);
+            long to = Math.min(end, bytesOffset + bytes.length);
+            if (from < to) {
+                out.write(bytes, (int) (from - bytesOffset), (int) (to - from));
+            }
+        }
+
+        private byte[] createLocalHeader(Entry entry, long crc) {
+            ByteBuffer buffer = allocate(entry.localHeaderLength());
+            buffer.putInt(LOCAL_HEADER_SIGNATURE);
+            buffer.putShort(entry.hasZip64Size() ? VERSION_ZIP64 : VERSION_DEFAULT);
+            buffer.putShort(FLAGS);
+            buffer.putShort(METHOD_STORED);
+            buffer.putInt((int) entry.dosTime());
+            buffer.putInt((int) crc);
+            buffer.putInt(entry.hasZip64Size() ? (int) ZIP64_MAGIC : (int) entry.size());
+            buffer.putInt(entry.hasZip64Size() ? (int) ZIP64_MAGIC : (int) entry.size());
+            buffer.putShort((short) entry.name().length);
+            buffer.putShort((short) (entry.hasZip64Size() ? 20 : 0));
+            buffer.put(entry.name());
+            if (entry.hasZip64Size()) {
+                buffer.putShort(ZIP64_EXTRA_ID);
+                buffer.putShort((short) 16);
+                buffer.putLong(entry.size());
+                buffer.putLong(entry.size());
+            }
+            return buffer.array();
+        }
+
+        private byte[] createCentralHeader(Entry entry, long crc) {
+            boolean zip64 = entry.hasZip64Size() || entry.hasZip64Offset();
+            ByteBuffer buffer = allocate(entry.centralHeaderLength());
+            buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+            buffer.putShort(VERSION_ZIP64);
+            buffer.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            buffer.putShort(FLAGS);
+            buffer.putShort(METHOD_STORED);
+            buffer.putInt((int) entry.dosTime());
+            buffer.putInt((int) crc);
+            buffer.putInt(entry.hasZip64Size() ? (int) ZIP64_MAGIC : (int) entry.size());
+            buffer.putInt(entry.hasZip64Size() ? (int) ZIP64_MAGIC : (int) entry.size());
+            buffer.putShort((short) entry.name().length);
+            buffer.putShort((short) entry.centralExtraLength());
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(entry.isFolder() ? DOS_DIRECTORY_ATTRIBUTE : 0);
+            buffer.putInt(entry.hasZip64Offset() ? (int) ZIP64_MAGIC : (int) entry.offset());
+            buffer.put(entry.name());
+            if (zip64) {
+                buffer.putShort(ZIP64_EXTRA_ID);
+                buffer.putShort((short) (entry.centralExtraLength() - 4));
+                if (entry.hasZip64Size()) {
+                    buffer.putLong(entry.size());
+                    buffer.putLong(entry.size());
+                }
+                if (entry.hasZip64Offset()) {
+                    buffer.putLong(entry.offset());
+                }
+            }
+            return buffer.array();
+        }
+
+        private byte[] createEndRecords() {
+            ByteBuffer buffer = allocate((zip64End ? ZIP64_END_LENGTH + ZIP64_LOCATOR_LENGTH : 0) + END_LENGTH);
+            if (zip64End) {
+                buffer.putInt(ZIP64_END_SIGNATURE);
+                buffer.putLong(ZIP64_END_LENGTH - 12);
+                buffer.putShort(VERSION_ZIP64);
+                buffer.putShort(VERSION_ZIP64);
+                buffer.putInt(0);
+                buffer.putInt(0);
+                buffer.putLong(entries.size());
+                buffer.putLong(entries.size());
+                buffer.putLong(centralDirectoryLength);
+                buffer.putLong(centralDirectoryOffset);
+                buffer.putInt(ZIP64_LOCATOR_SIGNATURE);
+                buffer.putInt(0);
+                buffer.putLong(centralDirectoryOffset + centralDirectoryLength);
+                buffer.putInt(1);
+            }
+            buffer.putInt(END_SIGNATURE);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            buffer.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+            buffer.putInt(centralDirectoryLength >= ZIP64_MAGIC ? (int) ZIP64_MAGIC : (int) centralDirectoryLength);
+            buffer.putInt(centralDirectoryOffset >= ZIP64_MAGIC ? (int) ZIP64_MAGIC : (int) centralDirectoryOffset);
+            buffer.putShort((short) 0);
+            return buffer.array();
+        }
+
+        private ByteBuffer allocate(int length) {
+            return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package edu.example.project.service;
+
+import java.io.InputStream;
+
+/**
+ * File read from request body while it is being uploaded, content can be read only once
+ *
+ * @param fileName original file name, may contain relative path of the file inside uploaded folder
+ */
+public record UploadPart(String fileName, String contentType, InputStream content) {
+}
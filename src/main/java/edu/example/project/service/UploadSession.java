@@ -0,0 +1,80 @@
+package edu.example.project.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Resumable upload of one file. Chunk at offset {@code n * chunkSize} is uploaded as MinIO part {@code n + 1},
+ * every chunk except the last one has exactly chunkSize bytes
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+public class UploadSession {
+
+    private String id;
+
+    @Getter(AccessLevel.PACKAGE)
+    private Long userId;
+
+    /**
+     * Folder the upload was started in, missing folders between it and the file are created on completion
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private String folder;
+
+    @Getter(AccessLevel.PACKAGE)
+    private String objectKey;
+
+    @Getter(AccessLevel.PACKAGE)
+    private String uploadId;
+
+    private long size;
+
+    private long chunkSize;
+
+    private String contentType;
+
+    private Instant expiresAt;
+
+    /**
+     * Etags of received parts by part number
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private SortedMap<Integer, String> partEtags = new TreeMap<>();
+
+    public int getChunkCount() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    public boolean isComplete() {
+        return partEtags.size() == getChunkCount();
+    }
+
+    /**
+     * Received byte ranges, adjacent chunks are merged
+     *
+     * @return pairs of first and last byte offsets
+     */
+    public List<long[]> getReceivedRanges() {
+        List<long[]> ranges = new ArrayList<>();
+        for (int partNumber : partEtags.keySet()) {
+            long start = (partNumber - 1) * chunkSize;
+            long end = Math.min(start + chunkSize, size) - 1;
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] + 1 == start) {
+                last[1] = end;
+            } else {
+                ranges.add(new long[] {start, end});
+            }
+        }
+        return ranges;
+    }
+
+}
@@ -0,0 +1,123 @@
+package edu.example.project.service;
+
+import edu.example.project.config.UploadProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs per-file upload work on virtual threads. Concurrency is bounded per call and across all calls,
+ * so one big upload can't take all MinIO connections
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadTaskRunner {
+
+    private final UploadProperties uploadProperties;
+
+    private ExecutorService executor;
+
+    private Semaphore globalPermits;
+
+    @PostConstruct
+    private void createExecutor() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        globalPermits = new Semaphore(uploadProperties.getGlobalParallelism());
+    }
+
+    @PreDestroy
+    private void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Results are in order of tasks. After the first failure no more tasks are started, already running ones are
+     * awaited, so nothing is written after this method returns, and the failure is thrown
+     */
+    protected <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        return invokeAll(tasks.iterator());
+    }
+
+    /**
+     * Tasks may be created while previous ones run, the next one is taken only when it can be started.
+     * If taking a task fails, that failure is handled like a failure of a task
+     */
+    protected <T> List<T> invokeAll(Iterator<Callable<T>> tasks) {
+        Semaphore requestPermits = new Semaphore(uploadProperties.getParallelism());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<T>> futures = new ArrayList<>();
+        try {
+            while (tasks.hasNext()) {
+                requestPermits.acquire();
+                if (failure.get() != null) {
+                    break;
+                }
+                Callable<T> task = tasks.next();
+                futures.add(executor.submit(() -> {
+                    try {
+                        globalPermits.acquire();
+                        try {
+                            return task.call();
+                        } finally {
+                            globalPermits.release();
+                        }
+                    } catch (Exception exception) {
+                        failure.compareAndSet(null, exception);
+                        throw exception;
+                    } finally {
+                        requestPermits.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, exception);
+        } catch (RuntimeException exception) {
+            failure.compareAndSet(null, exception);
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(awaitUninterruptibly(future));
+            } catch (ExecutionException ignored) {}
+        }
+        Exception exception = failure.get();
+        if (exception instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (exception != null) {
+            throw new RuntimeException(exception);
+        }
+        return results;
+    }
+
+    private <T> T awaitUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
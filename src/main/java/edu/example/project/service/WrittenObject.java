@@ -0,0 +1,10 @@
+package edu.example.project.service;
+
+/**
+ * What is known about an object right after it was written, without asking MinIO again
+ *
+ * @param versionId null if bucket versioning is disabled
+ * @param size null if it is not known to the writer, as for server-side copies
+ */
+public record WrittenObject(String key, String etag, String versionId, Long size) {
+}
@@ -0,0 +1,77 @@
+package edu.example.project.service;
+
+import edu.example.project.config.DownloadProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses compression level for every archive entry. Already compressed data (by content type, extension
+ * or entropy of the first block) is not deflated, so no CPU is spent on entries which would not shrink
+ */
+@Component
+@RequiredArgsConstructor
+public class ZipCompressionPolicy {
+
+    private static final int ENTROPY_SAMPLE_SIZE = 4096;
+
+    /**
+     * Entropy of shorter samples is too inaccurate
+     */
+    private static final int MINIMUM_ENTROPY_SAMPLE_SIZE = 1024;
+
+    private final DownloadProperties downloadProperties;
+
+    /**
+     * @param name entry name
+     * @param head first bytes of entry content
+     * @return {@link Deflater#NO_COMPRESSION} for incompressible entries, configured deflate level otherwise
+     */
+    public int resolveLevel(String name, byte[] head) {
+        if (isCompressedFormat(name) || hasHighEntropy(head)) {
+            return Deflater.NO_COMPRESSION;
+        }
+        return downloadProperties.getZipDeflateLevel();
+    }
+
+    private boolean isCompressedFormat(String name) {
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        if (downloadProperties.getZipStoredExtensions().contains(extension)) {
+            return true;
+        }
+        MediaType mediaType = MediaTypeFactory.getMediaType(name).orElse(null);
+        if (mediaType == null) {
+            return false;
+        }
+        for (String storedType : downloadProperties.getZipStoredContentTypes()) {
+            if (MediaType.parseMediaType(storedType).includes(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasHighEntropy(byte[] head) {
+        int sampleSize = Math.min(head.length, ENTROPY_SAMPLE_SIZE);
+        if (sampleSize < MINIMUM_ENTROPY_SAMPLE_SIZE) {
+            return false;
+        }
+        int[] frequencies = new int[256];
+        for (int i = 0; i < sampleSize; i++) {
+            frequencies[head[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int frequency : frequencies) {
+            if (frequency > 0) {
+                double probability = (double) frequency / sampleSize;
+                entropy -= probability * (Math.log(probability) / Math.log(2));
+            }
+        }
+        return entropy > downloadProperties.getZipEntropyThreshold();
+    }
+
+}
@@ -0,0 +1,43 @@
+package edu.example.project.service;
+
+import edu.example.project.config.DownloadProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * CRC32 of objects by their etag and size, shared by all application nodes through Redis
+ */
+@Component
+@RequiredArgsConstructor
+public class ZipCrcCache {
+
+    private static final String KEY_PREFIX = "zip-crc:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final DownloadProperties downloadProperties;
+
+    protected Long find(String etag, long size) {
+        String crc = redisTemplate.opsForValue().get(resolveKey(etag, size));
+        return crc == null ? null : Long.valueOf(crc);
+    }
+
+    protected void save(String etag, long size, long crc) {
+        redisTemplate.opsForValue().set(resolveKey(etag, size), Long.toString(crc), downloadProperties.getResumableCrcTtl());
+    }
+
+    /**
+     * CRC computed while the object was written, so the first archive of its folder doesn't read it just for the CRC
+     */
+    protected void saveWritten(String etag, long size, long crc) {
+        if (downloadProperties.isResumableArchives()) {
+            save(etag, size, crc);
+        }
+    }
+
+    private String resolveKey(String etag, long size) {
+        return KEY_PREFIX + etag + ":" + size;
+    }
+
+}
@@ -8,6 +8,8 @@ import java.util.regex.Pattern;
 
 public class PathValidator implements ConstraintValidator<ValidPath, String> {
 
+    private static final Pattern PATTERN = Pattern.compile("^[a-zA-Z0-9/_\\-.]+$");
+
     @Override
     public void initialize(ValidPath constraintAnnotation) {
         ConstraintValidator.super.initialize(constraintAnnotation);
@@ -18,9 +20,15 @@ public class PathValidator implements ConstraintValidator<ValidPath, String> {
         if (object == null || object.isEmpty()) {
             return true;
         }
-        Pattern pattern = Pattern.compile("^[a-zA-Z0-9/_\\-.]+$");
-        Matcher matcher = pattern.matcher(object);
-        return !object.contains("//") && !object.contains("..") && matcher.matches();
+        return isValidPath(object);
+    }
+
+    /**
+     * Same rules for paths which are not bound to request objects, e.g. names of archive entries
+     */
+    public static boolean isValidPath(String path) {
+        Matcher matcher = PATTERN.matcher(path);
+        return !path.contains("//") && !path.contains("..") && matcher.matches();
     }
 
 }
@@ -0,0 +1,96 @@
+package edu.example.project;
+
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.service.DownloadableResource;
+import edu.example.project.service.ResourceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures folder zip throughput for several prefetch depths. Run with ./gradlew benchmark
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers
+@Tag("benchmark")
+public class FolderZipBenchmark {
+
+    private static final Long USER_ID = 1L;
+
+    private static final String FOLDER = "benchmark/";
+
+    private static final int FILES_NUMBER = 1000;
+
+    private static final int FILE_SIZE = 4 * 1024;
+
+    private static final int[] DEPTHS = {0, 1, 4, 8, 16};
+
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    ResourceService resourceService;
+
+    @Autowired
+    DownloadProperties downloadProperties;
+
+    @BeforeEach
+    void uploadFiles() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Random random = new Random(42);
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < FILES_NUMBER; i++) {
+            byte[] content = new byte[FILE_SIZE];
+            random.nextBytes(content);
+            files.add(new MockMultipartFile("file", "file" + i + ".bin", "application/octet-stream", content));
+        }
+        resourceService.createFolder(USER_ID, FOLDER);
+        resourceService.uploadResources(USER_ID, FOLDER, files);
+    }
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, FOLDER);
+    }
+
+    @Test
+    void measureThroughputByPrefetchDepth() throws ResourceNotFoundException, IOException {
+        DownloadableResource folder = resourceService.getDownloadableResource(USER_ID, FOLDER);
+        int initialDepth = downloadProperties.getZipPrefetchDepth();
+        try {
+            for (int depth : DEPTHS) {
+                downloadProperties.setZipPrefetchDepth(depth);
+                resourceService.writeResourceBinaryContent(folder, OutputStream.nullOutputStream());
+                long bestTime = Long.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    resourceService.writeResourceBinaryContent(folder, OutputStream.nullOutputStream());
+                    bestTime = Math.min(bestTime, System.nanoTime() - start);
+                }
+                double seconds = bestTime / 1e9;
+                System.out.printf("depth=%2d  %8.1f files/s  %6.2f MB/s%n",
+                        depth,
+                        FILES_NUMBER / seconds,
+                        (double) FILES_NUMBER * FILE_SIZE / seconds / (1024 * 1024)
+                );
+            }
+        } finally {
+            downloadProperties.setZipPrefetchDepth(initialDepth);
+        }
+    }
+
+}
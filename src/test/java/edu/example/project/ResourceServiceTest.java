@@ -1,10 +1,22 @@
 package edu.example.project;
 
 import edu.example.project.config.BucketProperties;
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.config.UploadProperties;
+import edu.example.project.controller.upload.ArchiveEntryParser;
 import edu.example.project.dto.ResourceDto;
+import edu.example.project.dto.ResourcePageDto;
+import edu.example.project.exception.InvalidCursorException;
+import edu.example.project.exception.InvalidUploadException;
 import edu.example.project.exception.ResourceAlreadyExistsException;
 import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.model.ResourceEntry;
+import edu.example.project.repository.ResourceEntryRepository;
+import edu.example.project.service.DownloadableResource;
+import edu.example.project.service.ResourceIndex;
 import edu.example.project.service.ResourceService;
+import edu.example.project.service.UploadPart;
+import edu.example.project.service.ZipCrcCache;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.messages.DeleteError;
@@ -15,16 +27,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.multipart.MultipartFile;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.security.InvalidKeyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,8 +63,28 @@ public class ResourceServiceTest {
     @Autowired
     BucketProperties bucketProperties;
 
+    @Autowired
+    DownloadProperties downloadProperties;
+
+    @Autowired
+    UploadProperties uploadProperties;
+
+    @Autowired
+    ArchiveEntryParser archiveEntryParser;
+
+    @Autowired
+    ResourceEntryRepository resourceEntryRepository;
+
+    @Autowired
+    ResourceIndex resourceIndex;
+
+    @MockitoBean
+    ZipCrcCache zipCrcCache;
+
     @BeforeEach
     void clearTestBucket() {
+        resourceIndex.flushTotals();
+        resourceEntryRepository.deleteAll();
         List<DeleteObject> deleteObjects = new ArrayList<>();
         try {
             for (Result<Item> result : minioClient.listObjects(
@@ -96,6 +137,12 @@ public class ResourceServiceTest {
         return files;
     }
 
+    byte[] downloadResource(Long userId, String path) throws ResourceNotFoundException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourceBinaryContent(resourceService.getDownloadableResource(userId, path), out);
+        return out.toByteArray();
+    }
+
     @Test
     void test() throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
         boolean boll = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketProperties.getDefaultName()).build());
@@ -270,7 +317,7 @@ public class ResourceServiceTest {
 
         resourceService.createFolder(userId, "folder/");
         resourceService.uploadResources(userId, "folder/", files);
-        List<ResourceDto> list = resourceService.findResourcesInfo(userId, "file");
+        List<ResourceDto> list = resourceService.findResourcesInfo(userId, "file", null);
 
         for (ResourceDto resource : list) {
             String name = resource.getPath() + resource.getName();
@@ -303,7 +350,7 @@ public class ResourceServiceTest {
         assertAll(
                 () -> assertEquals("", folder.getPath()),
                 () -> assertEquals("folder/", folder.getName()),
-                () -> assertNull(folder.getSize()),
+                () -> assertEquals(0L, folder.getSize()),
                 () -> assertEquals("DIRECTORY", folder.getType())
         );
         assertAll(
@@ -327,7 +374,7 @@ public class ResourceServiceTest {
         resourceService.uploadResources(userId, "folder/dir/", files);
         resourceService.uploadResources(userId, "folder/another/", files);
 
-        byte[] zip = resourceService.getResourceBinaryContent(userId, "folder/");
+        byte[] zip = downloadResource(userId, "folder/");
 
         try (ByteArrayInputStream byteIn = new ByteArrayInputStream(zip);
              ZipInputStream zipIn = new ZipInputStream(byteIn)
@@ -349,7 +396,7 @@ public class ResourceServiceTest {
 
         resourceService.createFolder(userId, "folder/");
 
-        byte[] zip = resourceService.getResourceBinaryContent(userId, "folder/");
+        byte[] zip = downloadResource(userId, "folder/");
 
         try (ByteArrayInputStream byteIn = new ByteArrayInputStream(zip);
              ZipInputStream zipIn = new ZipInputStream(byteIn)
@@ -366,7 +413,546 @@ public class ResourceServiceTest {
 
         resourceService.uploadResources(userId, "", files);
 
-        byte[] zip = resourceService.getResourceBinaryContent(userId, "file.txt");
+        byte[] zip = downloadResource(userId, "file.txt");
         assertArrayEquals("mockedText".getBytes(), zip);
     }
+
+    @Test
+    void shouldDownloadFileRange() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        List<MultipartFile> files = getFilesListWithMockedOne("file.txt");
+        Long userId = 1L;
+
+        resourceService.uploadResources(userId, "", files);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourceBinaryContent(resourceService.getDownloadableResource(userId, "file.txt"), 2, 4, out);
+        assertArrayEquals("cked".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void shouldZipSeveralResourcesWithUniqueNames() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        List<MultipartFile> files = getFilesListWithMockedOne("file.txt");
+        Long userId = 1L;
+
+        resourceService.createFolder(userId, "first/");
+        resourceService.createFolder(userId, "second/");
+        resourceService.createFolder(userId, "third/");
+        resourceService.uploadResources(userId, "first/", files);
+        resourceService.uploadResources(userId, "second/", files);
+        resourceService.createFolder(userId, "third/first/");
+        resourceService.uploadResources(userId, "third/first/", files);
+
+        List<DownloadableResource> resources = resourceService.getDownloadableResources(
+                userId, List.of("first/file.txt", "second/file.txt", "third/first/")
+        );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourcesZipped(resources, out);
+
+        try (ByteArrayInputStream byteIn = new ByteArrayInputStream(out.toByteArray());
+             ZipInputStream zipIn = new ZipInputStream(byteIn)
+        ) {
+            Set<String> fileNames = new HashSet<>();
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                fileNames.add(entry.getName());
+            }
+            assertTrue(fileNames.contains("file.txt"));
+            assertTrue(fileNames.contains("file (1).txt"));
+            assertTrue(fileNames.contains("first/file.txt"));
+        }
+    }
+
+    @Test
+    void shouldZipResourcesInsideSelectedFolderOnce() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        List<MultipartFile> files = getFilesListWithMockedOne("file.txt");
+        Long userId = 1L;
+
+        resourceService.createFolder(userId, "folder/");
+        resourceService.createFolder(userId, "folder/dir/");
+        resourceService.uploadResources(userId, "folder/dir/", files);
+
+        List<DownloadableResource> resources = resourceService.getDownloadableResources(
+                userId, List.of("folder/dir/file.txt", "folder/", "folder/dir/")
+        );
+        assertEquals(1, resources.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourcesZipped(resources, out);
+
+        try (ByteArrayInputStream byteIn = new ByteArrayInputStream(out.toByteArray());
+             ZipInputStream zipIn = new ZipInputStream(byteIn)
+        ) {
+            List<String> fileNames = new ArrayList<>();
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    fileNames.add(entry.getName());
+                }
+            }
+            assertEquals(List.of("folder/dir/file.txt"), fileNames);
+        }
+    }
+
+    @Test
+    void shouldNotLayOutArchivesOfSelectedFolders() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedOne("file.txt"));
+
+        downloadProperties.setResumableArchives(true);
+        try {
+            List<DownloadableResource> resources = resourceService.getDownloadableResources(
+                    userId, List.of("folder/", "folder/file.txt")
+            );
+            assertEquals(1, resources.size());
+            assertNull(resources.getFirst().getSize());
+            assertNull(resources.getFirst().getEtag());
+            assertThrows(ResourceNotFoundException.class,
+                    () -> resourceService.getDownloadableResources(userId, List.of("folder/", "missing/")));
+        } finally {
+            downloadProperties.setResumableArchives(false);
+        }
+    }
+
+    @Test
+    void shouldDownloadResumableFolderArchiveInRanges() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        List<MultipartFile> files = getFilesListWithMockedFiles();
+        Long userId = 1L;
+
+        resourceService.createFolder(userId, "folder/");
+        resourceService.createFolder(userId, "folder/dir/");
+        resourceService.uploadResources(userId, "folder/dir/", files);
+
+        downloadProperties.setResumableArchives(true);
+        try {
+            DownloadableResource resource = resourceService.getDownloadableResource(userId, "folder/");
+            byte[] zip = downloadResource(userId, "folder/");
+            assertEquals(resource.getSize(), zip.length);
+            assertEquals(resource.getEtag(), resourceService.getDownloadableResource(userId, "folder/").getEtag());
+
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            ByteArrayOutputStream tail = new ByteArrayOutputStream();
+            resourceService.writeResourceBinaryContent(resource, 0, 100, head);
+            resourceService.writeResourceBinaryContent(resource, 100, zip.length - 100, tail);
+            ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+            resumed.write(head.toByteArray());
+            resumed.write(tail.toByteArray());
+            assertArrayEquals(zip, resumed.toByteArray());
+
+            Path zipFile = Files.createTempFile("archive", ".zip");
+            try {
+                Files.write(zipFile, zip);
+                try (ZipFile archive = new ZipFile(zipFile.toFile())) {
+                    ZipEntry entry = archive.getEntry("folder/dir/file1.txt");
+                    assertNotNull(entry);
+                    assertArrayEquals("mockedText".getBytes(), archive.getInputStream(entry).readAllBytes());
+                }
+            } finally {
+                Files.delete(zipFile);
+            }
+
+            try (ByteArrayInputStream byteIn = new ByteArrayInputStream(zip);
+                 ZipInputStream zipIn = new ZipInputStream(byteIn)
+            ) {
+                int fileCount = 0;
+                ZipEntry entry;
+                while ((entry = zipIn.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) {
+                        assertArrayEquals("mockedText".getBytes(), zipIn.readAllBytes());
+                        fileCount++;
+                    }
+                }
+                assertEquals(files.size(), fileCount);
+            }
+        } finally {
+            downloadProperties.setResumableArchives(false);
+        }
+    }
+
+    @Test
+    void shouldFailResumingFolderArchiveOfChangedFile() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedOne("file.txt"));
+
+        downloadProperties.setResumableArchives(true);
+        try {
+            DownloadableResource resource = resourceService.getDownloadableResource(userId, "folder/");
+            resourceService.removeResource(userId, "folder/file.txt");
+            resourceService.uploadResources(userId, "folder/", List.of(
+                    new MockMultipartFile("file", "file.txt", "text/plain", "changedTxt".getBytes())
+            ));
+
+            assertThrows(IOException.class, () -> resourceService.writeResourceBinaryContent(
+                    resource, 1, resource.getSize() - 1, OutputStream.nullOutputStream()));
+        } finally {
+            downloadProperties.setResumableArchives(false);
+        }
+    }
+
+    @Test
+    void shouldUploadStreamedParts() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+
+        List<UploadPart> parts = List.of(
+                new UploadPart("file.txt", "text/plain", new ByteArrayInputStream("mockedText".getBytes())),
+                new UploadPart("dir/nested.txt", null, new ByteArrayInputStream("nested".getBytes()))
+        );
+        List<ResourceDto> uploaded = resourceService.uploadResources(userId, "folder/", parts.iterator());
+
+        assertEquals(2, uploaded.size());
+        assertArrayEquals("mockedText".getBytes(), downloadResource(userId, "folder/file.txt"));
+        assertArrayEquals("nested".getBytes(), downloadResource(userId, "folder/dir/nested.txt"));
+        assertEquals("DIRECTORY", resourceService.getResourceInfo(userId, "folder/dir/").getType());
+    }
+
+    @Test
+    void shouldRemoveStreamedPartsOnConflict() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", getFilesListWithMockedOne("existing.txt"));
+
+        List<UploadPart> parts = List.of(
+                new UploadPart("new.txt", "text/plain", new ByteArrayInputStream("mockedText".getBytes())),
+                new UploadPart("existing.txt", "text/plain", new ByteArrayInputStream("mockedText".getBytes()))
+        );
+
+        assertThrows(ResourceAlreadyExistsException.class, () -> resourceService.uploadResources(userId, "", parts.iterator()));
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(userId, "new.txt"));
+    }
+
+    @Test
+    void shouldUploadStreamOfSeveralPartsInParallel() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Long userId = 1L;
+        byte[] content = new byte[(int) (uploadProperties.getPartSize() * 2 + 123)];
+        new Random(42).nextBytes(content);
+        resourceService.createFolder(userId, "folder/");
+
+        List<ResourceDto> uploaded = resourceService.uploadResources(userId, "folder/",
+                List.of(new UploadPart("big.bin", null, new ByteArrayInputStream(content))).iterator());
+
+        assertEquals(content.length, uploaded.getFirst().getSize());
+        assertArrayEquals(content, downloadResource(userId, "folder/big.bin"));
+    }
+
+    @Test
+    void shouldReportEveryConflictingName() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "dir/x.txt", "text/plain", "mockedText".getBytes())
+        ));
+
+        ResourceAlreadyExistsException exception = assertThrows(ResourceAlreadyExistsException.class, () -> resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "b.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "dir/y.txt", "text/plain", "mockedText".getBytes())
+        )));
+
+        assertEquals(List.of("a.txt", "dir/"), exception.getConflicts());
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(userId, "b.txt"));
+    }
+
+    @Test
+    void shouldExtractZipArchive() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        byte[] big = new byte[(int) uploadProperties.getArchiveEntryBufferSize() + 1];
+        new Random(42).nextBytes(big);
+        byte[] archive = zip(Map.of(
+                "file.txt", "mockedText".getBytes(),
+                "dir/nested/big.bin", big,
+                "empty/", new byte[0]
+        ));
+
+        List<ResourceDto> extracted = resourceService.extractArchive(userId, "folder/", archiveEntryParser.parse(new ByteArrayInputStream(archive)));
+
+        assertEquals(2, extracted.size());
+        assertArrayEquals("mockedText".getBytes(), downloadResource(userId, "folder/file.txt"));
+        assertArrayEquals(big, downloadResource(userId, "folder/dir/nested/big.bin"));
+        assertEquals("DIRECTORY", resourceService.getResourceInfo(userId, "folder/dir/nested/").getType());
+        assertEquals("DIRECTORY", resourceService.getResourceInfo(userId, "folder/empty/").getType());
+    }
+
+    @Test
+    void shouldRejectArchiveEntryOutsideFolder() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        byte[] archive = zip(Map.of("folder/../../user-2-files/evil.txt", "mockedText".getBytes()));
+
+        assertThrows(InvalidUploadException.class, () -> resourceService.extractArchive(userId, "folder/", archiveEntryParser.parse(new ByteArrayInputStream(archive))));
+        assertEquals(List.of(), resourceService.getFolderContents(userId, "folder/"));
+    }
+
+    @Test
+    void shouldRemoveExtractedEntriesOnConflict() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", getFilesListWithMockedOne("existing.txt"));
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("new.txt", "mockedText".getBytes());
+        entries.put("existing.txt", "mockedText".getBytes());
+        byte[] archive = zip(entries);
+
+        ResourceAlreadyExistsException exception = assertThrows(ResourceAlreadyExistsException.class,
+                () -> resourceService.extractArchive(userId, "", archiveEntryParser.parse(new ByteArrayInputStream(archive))));
+        assertEquals(List.of("existing.txt"), exception.getConflicts());
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(userId, "new.txt"));
+    }
+
+    @Test
+    void shouldServeMetadataFromIndex() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "folder/dir/b.txt", "text/plain", "mockedText".getBytes())
+        ));
+        resourceService.moveResource(userId, "folder/", "moved/");
+
+        assertEquals(List.of("a.txt", "dir/"), resourceService.getFolderContents(userId, "moved/").stream().map(ResourceDto::getName).toList());
+        assertEquals(10, resourceService.getResourceInfo(userId, "moved/dir/b.txt").getSize());
+        assertTrue(resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, "folder/").isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(userId, "folder/a.txt"));
+
+        resourceService.removeResource(userId, "moved/dir/");
+
+        assertTrue(resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, "moved/dir/").isEmpty());
+        assertEquals(1, resourceService.getFolderContents(userId, "moved/").size());
+    }
+
+    @Test
+    void shouldRepairIndexFromStorage() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "folder/dir/b.txt", "text/plain", "mockedText".getBytes())
+        ));
+        resourceEntryRepository.deleteAll();
+
+        assertEquals(List.of("a.txt", "dir/"), resourceService.getFolderContents(userId, "folder/").stream().map(ResourceDto::getName).toList());
+        assertEquals(2, resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, "folder/").size());
+        assertEquals("text/plain", resourceService.getDownloadableResource(userId, "folder/a.txt").getContentType());
+        assertEquals(10, resourceService.getResourceInfo(userId, "folder/dir/b.txt").getSize());
+    }
+
+    @Test
+    void shouldKeepChildrenIndexedWhileFolderIsListed() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes())
+        ));
+        ResourceEntry folder = resourceEntryRepository.findById(new ResourceEntry.Key(userId, "", "folder/")).orElseThrow();
+        folder.setListed(false);
+        resourceEntryRepository.save(folder);
+        resourceEntryRepository.save(indexedFile(userId, "removed.txt", Instant.now().minusSeconds(60)));
+        resourceEntryRepository.save(indexedFile(userId, "written.txt", Instant.now().plusSeconds(60)));
+
+        assertEquals(List.of("a.txt", "written.txt"),
+                resourceService.getFolderContents(userId, "folder/").stream().map(ResourceDto::getName).toList());
+    }
+
+    private ResourceEntry indexedFile(Long userId, String name, Instant lastModified) {
+        ResourceEntry entry = new ResourceEntry();
+        entry.setUserId(userId);
+        entry.setParentPath("folder/");
+        entry.setName(name);
+        entry.setType(ResourceEntry.FILE);
+        entry.setSize(10L);
+        entry.setLastModified(lastModified);
+        entry.setCreatedAt(lastModified);
+        return entry;
+    }
+
+    @Test
+    void shouldListFolderContentsPageByPage() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedFiles());
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedOne("dir/file.txt"));
+        resourceEntryRepository.deleteAll();
+
+        ResourcePageDto folderPage = resourceService.getFolderContents(userId, "folder/", null, 1);
+        assertEquals("dir/", folderPage.getItems().getFirst().getName());
+        assertEquals("file1.txt", resourceService.getFolderContents(userId, "folder/", folderPage.getNextCursor(), 1)
+                .getItems().getFirst().getName());
+
+        List<String> names = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            ResourcePageDto page = resourceService.getFolderContents(userId, "folder/", cursor, 4);
+            page.getItems().forEach(resource -> names.add(resource.getName()));
+            pageSizes.add(page.getItems().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(4, 4, 3), pageSizes);
+        // pages of a folder which is not listed are read from MinIO without indexing the whole folder
+        assertTrue(resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, "folder/").isEmpty());
+        assertEquals(resourceService.getFolderContents(userId, "folder/").stream().map(ResourceDto::getName).toList(), names);
+        assertThrows(InvalidCursorException.class, () -> resourceService.getFolderContents(userId, "folder/", "not a cursor", 4));
+    }
+
+    @Test
+    void shouldSearchNamesByRelevance() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "docs/annual-report.pdf", "application/pdf", "mockedText".getBytes()),
+                new MockMultipartFile("file", "docs/Report.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "report/notes.txt", "text/plain", "mockedText".getBytes())
+        ));
+
+        assertEquals(List.of("report/", "Report.txt", "annual-report.pdf"),
+                resourceService.findResourcesInfo(userId, "REPORT", null).stream().map(ResourceDto::getName).toList());
+        assertEquals(2, resourceService.findResourcesInfo(userId, "report", 2).size());
+        assertTrue(resourceService.findResourcesInfo(userId, "re_ort", null).isEmpty());
+
+        resourceService.removeResource(userId, "docs/Report.txt");
+        resourceService.moveResource(userId, "report/", "archive/");
+
+        assertEquals(List.of("annual-report.pdf"),
+                resourceService.findResourcesInfo(userId, "report", null).stream().map(ResourceDto::getName).toList());
+    }
+
+    @Test
+    void shouldStreamSearchResultsUpToLimit() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedFiles());
+        resourceEntryRepository.deleteAll();
+
+        List<ResourceDto> listed = new ArrayList<>();
+        assertTrue(resourceService.streamResourcesInfo(userId, "FILE", 3, listed::add));
+        assertEquals(3, listed.size());
+        awaitIndexedChildren(userId, "folder/", 10);
+
+        List<ResourceDto> indexed = new ArrayList<>();
+        assertFalse(resourceService.streamResourcesInfo(userId, "file", 20, indexed::add));
+        assertEquals(10, indexed.size());
+    }
+
+    @Test
+    void shouldIndexTreeAfterClientOfSearchIsGone() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.createFolder(userId, "folder/");
+        resourceService.uploadResources(userId, "folder/", getFilesListWithMockedFiles());
+        resourceEntryRepository.deleteAll();
+
+        assertThrows(UncheckedIOException.class, () -> resourceService.streamResourcesInfo(userId, "file", 20, resource -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+
+        awaitIndexedChildren(userId, "folder/", 10);
+    }
+
+    /**
+     * Trees are indexed in the background while they are searched
+     */
+    private void awaitIndexedChildren(Long userId, String parentPath, int count) {
+        Instant deadline = Instant.now().plusSeconds(10);
+        while (resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, parentPath).size() != count) {
+            assertTrue(Instant.now().isBefore(deadline), "Children of " + parentPath + " are not indexed");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(exception);
+            }
+        }
+    }
+
+    @Test
+    void shouldIndexWholeTreeBeforeSearch() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/dir/notes.txt", "text/plain", "mockedText".getBytes())
+        ));
+        resourceEntryRepository.deleteAll();
+
+        List<ResourceDto> found = resourceService.findResourcesInfo(userId, "notes", null);
+
+        assertEquals(1, found.size());
+        assertEquals("folder/dir/", found.get(0).getPath());
+        assertEquals(10, found.get(0).getSize());
+        assertEquals(1, resourceEntryRepository.findByUserIdAndParentPathOrderByName(userId, "folder/").size());
+    }
+
+    @Test
+    void shouldMaintainFolderTotals() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "folder/dir/b.txt", "text/plain", "mockedText".getBytes())
+        ));
+        resourceIndex.flushTotals();
+
+        ResourceDto folder = resourceService.getResourceInfo(userId, "folder/");
+        assertEquals(20, folder.getSize());
+        assertEquals(2, folder.getFileCount());
+        assertNotNull(folder.getContentModified());
+
+        resourceService.moveResource(userId, "folder/dir/", "moved/");
+        resourceService.removeResource(userId, "folder/a.txt");
+        resourceIndex.flushTotals();
+
+        assertEquals(0, resourceService.getResourceInfo(userId, "folder/").getFileCount());
+        assertEquals(10, resourceService.getFolderContents(userId, "").stream()
+                .filter(resource -> resource.getName().equals("moved/"))
+                .findFirst().orElseThrow().getSize());
+    }
+
+    @Test
+    void shouldSubtractChildrenGoneFromListedFolder() throws Exception {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "folder/dir/b.txt", "text/plain", "mockedText".getBytes())
+        ));
+        ResourceEntry unlisted = resourceEntryRepository.findById(new ResourceEntry.Key(userId, "folder/", "dir/")).orElseThrow();
+        unlisted.setListed(false);
+        resourceEntryRepository.save(unlisted);
+        minioClient.removeObject(RemoveObjectArgs.builder()
+                .bucket(bucketProperties.getDefaultName())
+                .object("user-1-files/folder/dir/b.txt")
+                .build());
+
+        assertTrue(resourceService.getFolderContents(userId, "folder/dir/").isEmpty());
+        resourceIndex.flushTotals();
+
+        assertEquals(10, resourceService.getResourceInfo(userId, "folder/").getSize());
+        assertEquals(1, resourceService.getResourceInfo(userId, "folder/").getFileCount());
+        assertEquals(0, resourceService.getResourceInfo(userId, "folder/dir/").getFileCount());
+    }
+
+    @Test
+    void shouldReconcileFolderTotals() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        Long userId = 1L;
+        resourceService.uploadResources(userId, "", List.of(
+                new MockMultipartFile("file", "folder/a.txt", "text/plain", "mockedText".getBytes()),
+                new MockMultipartFile("file", "folder/dir/b.txt", "text/plain", "mockedText".getBytes())
+        ));
+        ResourceEntry drifted = resourceEntryRepository.findById(new ResourceEntry.Key(userId, "", "folder/")).orElseThrow();
+        drifted.setTotalSize(999L);
+        drifted.setFileCount(null);
+        resourceEntryRepository.save(drifted);
+
+        resourceService.reconcileFolderTotals();
+        // deltas of the upload are part of the recomputed totals and must not be added again
+        resourceIndex.flushTotals();
+
+        assertEquals(20, resourceService.getResourceInfo(userId, "folder/").getSize());
+        assertEquals(2, resourceService.getResourceInfo(userId, "folder/").getFileCount());
+        assertEquals(10, resourceService.getResourceInfo(userId, "folder/dir/").getSize());
+    }
+
+    private byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zipOut.putNextEntry(new ZipEntry(entry.getKey()));
+                zipOut.write(entry.getValue());
+                zipOut.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
 }
@@ -0,0 +1,75 @@
+package edu.example.project;
+
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.service.ResourceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures write path latency of uploads and MinIO requests they issue by operation. Run with ./gradlew benchmark
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers
+@Tag("benchmark")
+public class UploadBenchmark {
+
+    private static final Long USER_ID = 1L;
+
+    private static final String FOLDER = "benchmark/";
+
+    private static final int FILES_NUMBER = 500;
+
+    private static final int FILE_SIZE = 4 * 1024;
+
+    private static final String[] OPERATIONS = {"put", "put-empty", "stat", "copy"};
+
+    @Autowired
+    ResourceService resourceService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, FOLDER);
+    }
+
+    @Test
+    void measureUploadLatency() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < FILES_NUMBER; i++) {
+            files.add(new MockMultipartFile("file", "dir/file" + i + ".bin", "application/octet-stream", new byte[FILE_SIZE]));
+        }
+        resourceService.createFolder(USER_ID, FOLDER);
+        meterRegistry.clear();
+
+        long start = System.nanoTime();
+        resourceService.uploadResources(USER_ID, FOLDER, files);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("upload of %d files  %8.1f ms  %6.3f ms/file%n", FILES_NUMBER, millis, millis / FILES_NUMBER);
+        for (String operation : OPERATIONS) {
+            Timer timer = meterRegistry.find("storage.minio.requests").tag("operation", operation).timer();
+            if (timer != null) {
+                System.out.printf("%-10s %6d requests  mean %6.3f ms%n",
+                        operation, timer.count(), timer.mean(TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package edu.example.project.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
@@ -24,4 +25,14 @@ public class TestMinioClientConfig {
                 .build();
     }
 
+    @Bean
+    public MultipartMinioClient multipartMinioClient(MinIOContainer container) {
+        return new MultipartMinioClient(
+                MinioAsyncClient.builder()
+                        .endpoint(container.getS3URL())
+                        .credentials(container.getUserName(), container.getPassword())
+                        .build()
+        );
+    }
+
 }
@@ -0,0 +1,106 @@
+package edu.example.project.controller.download;
+
+import edu.example.project.config.DownloadProperties;
+import edu.example.project.service.DownloadableResource;
+import edu.example.project.service.ResourceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DownloadResponseFactoryTest {
+
+    private static final long SIZE = 100;
+
+    ResourceService resourceService = mock(ResourceService.class);
+
+    DownloadProperties downloadProperties = new DownloadProperties();
+
+    DownloadResponseFactory downloadResponseFactory = new DownloadResponseFactory(resourceService, downloadProperties,
+            new GzipContentEncoder(downloadProperties, new SimpleMeterRegistry()));
+
+    DownloadableResource resource = createResource();
+
+    @Test
+    void shouldMergeOverlappingAndAdjacentRanges() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = downloadResponseFactory.createResponse(resource,
+                requestWithRange("bytes=20-29,0-9,5-19"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 0-29/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(30, response.getHeaders().getContentLength());
+        writeBody(response);
+        verify(resourceService, times(1)).writeResourceBinaryContent(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void shouldSendWholeContentOnceForRangesLongerThanContent() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = downloadResponseFactory.createResponse(resource,
+                requestWithRange("bytes=0-,0-,0-,50-"));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(SIZE, response.getHeaders().getContentLength());
+        writeBody(response);
+        verify(resourceService, times(1)).writeResourceBinaryContent(any(), any());
+    }
+
+    @Test
+    void shouldSendDisjointRangesAsParts() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = downloadResponseFactory.createResponse(resource,
+                requestWithRange("bytes=50-59,0-9"));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("multipart", response.getHeaders().getContentType().getType());
+        writeBody(response);
+        verify(resourceService, times(2)).writeResourceBinaryContent(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void shouldEncodeNameOfAttachment() {
+        ReflectionTestUtils.setField(resource, "name", "отчёт \"1\".bin");
+
+        ResponseEntity<StreamingResponseBody> response = downloadResponseFactory.createResponse(resource,
+                new ServletWebRequest(new MockHttpServletRequest("GET", "/api/resource/download"), new MockHttpServletResponse()));
+
+        ContentDisposition disposition = response.getHeaders().getContentDisposition();
+        assertEquals("attachment", disposition.getType());
+        assertEquals("отчёт \"1\".bin", disposition.getFilename());
+    }
+
+    private DownloadableResource createResource() {
+        DownloadableResource resource = new DownloadableResource();
+        ReflectionTestUtils.setField(resource, "objectKey", "user-1-files/file.bin");
+        ReflectionTestUtils.setField(resource, "name", "file.bin");
+        ReflectionTestUtils.setField(resource, "size", SIZE);
+        ReflectionTestUtils.setField(resource, "etag", "etag");
+        return resource;
+    }
+
+    private ServletWebRequest requestWithRange(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/resource/download");
+        request.addHeader(HttpHeaders.RANGE, range);
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private void writeBody(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        response.getBody().writeTo(new ByteArrayOutputStream());
+    }
+
+}
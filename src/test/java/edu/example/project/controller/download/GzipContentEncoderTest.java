@@ -0,0 +1,59 @@
+package edu.example.project.controller.download;
+
+import edu.example.project.config.DownloadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipContentEncoderTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    GzipContentEncoder gzipContentEncoder = new GzipContentEncoder(new DownloadProperties(), meterRegistry);
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {"gzip", "GZIP", "deflate, gzip", "x-gzip", "gzip;q=0.5", "*", "br;q=0, *", "*;q=0, gzip"}
+    )
+    void whenGzipAccepted_thenEncoded(String acceptEncoding) {
+        assertTrue(gzipContentEncoder.isAccepted(acceptEncoding));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {"", "identity", "deflate, br", "gzip;q=0", "gzip; q=0.0", "*;q=0", "gzip;q=0, *", "*, gzip;q=0"}
+    )
+    void whenGzipNotAccepted_thenNotEncoded(String acceptEncoding) {
+        assertFalse(gzipContentEncoder.isAccepted(acceptEncoding));
+    }
+
+    @Test
+    void whenAcceptEncodingMissing_thenNotEncoded() {
+        assertFalse(gzipContentEncoder.isAccepted(null));
+    }
+
+    @Test
+    void shouldEncodeWholeBodyAndRecordRatio() throws IOException {
+        byte[] content = "mockedText".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        gzipContentEncoder.encode(body -> body.write(content), content.length).writeTo(out);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        double ratio = meterRegistry.get("storage.download.gzip.ratio").summary().mean();
+        assertEquals((double) out.size() / content.length, ratio, 1e-9);
+        assertTrue(ratio < 1);
+    }
+
+}
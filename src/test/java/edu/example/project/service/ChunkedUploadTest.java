@@ -0,0 +1,141 @@
+package edu.example.project.service;
+
+import edu.example.project.dto.ResourceDto;
+import edu.example.project.dto.UploadSessionDto;
+import edu.example.project.exception.InvalidUploadException;
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Whole resumable upload protocol against a real Redis, sessions live only there
+ */
+@SpringBootTest(properties = "storage.upload.chunk-size=5242880")
+@ActiveProfiles("test")
+@Testcontainers
+public class ChunkedUploadTest {
+
+    private static final Long USER_ID = 1L;
+
+    private static final String EXPIRATIONS_KEY = "upload-sessions:expirations";
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS.getMappedPort(6379));
+    }
+
+    @Autowired
+    ResourceService resourceService;
+
+    @Autowired
+    ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void createFolder() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        resourceService.createFolder(USER_ID, "folder/");
+    }
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, "folder/");
+    }
+
+    @Test
+    void shouldResumeAndCompleteUpload() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        byte[] content = createContent();
+        UploadSessionDto session = resourceService.createUploadSession(USER_ID, "folder/", "file.bin", content.length, "application/octet-stream");
+        int chunkSize = Math.toIntExact(session.getChunkSize());
+        assertTrue(content.length > chunkSize);
+
+        resourceService.uploadChunk(USER_ID, session.getId(), 0, chunkSize, new ByteArrayInputStream(content, 0, chunkSize));
+        UploadSessionDto resumed = resourceService.getUploadSession(USER_ID, session.getId());
+        assertEquals(1, resumed.getReceived().size());
+        assertEquals(0, resumed.getReceived().getFirst().getStart());
+        assertEquals(chunkSize - 1, resumed.getReceived().getFirst().getEnd());
+        assertThrows(InvalidUploadException.class, () -> resourceService.completeUploadSession(USER_ID, session.getId()));
+
+        int rest = content.length - chunkSize;
+        resourceService.uploadChunk(USER_ID, session.getId(), chunkSize, rest, new ByteArrayInputStream(content, chunkSize, rest));
+        ResourceDto file = resourceService.completeUploadSession(USER_ID, session.getId());
+
+        assertEquals(content.length, file.getSize());
+        assertArrayEquals(content, download("folder/file.bin"));
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getUploadSession(USER_ID, session.getId()));
+    }
+
+    @Test
+    void shouldRejectChunkOfExpiredSession() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        UploadSessionDto session = resourceService.createUploadSession(USER_ID, "folder/", "file.bin", 10, "application/octet-stream");
+        redisTemplate.opsForZSet().add(EXPIRATIONS_KEY, session.getId(), 0);
+
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.uploadChunk(USER_ID, session.getId(), 0, 10,
+                new ByteArrayInputStream(new byte[10])));
+
+        chunkedUploadService.abortExpiredSessions();
+        assertFalse(redisTemplate.hasKey("upload-session:" + session.getId()));
+    }
+
+    @Test
+    void shouldNotCompleteUploadOfExistingFile() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        UploadSessionDto first = resourceService.createUploadSession(USER_ID, "folder/", "file.bin", 10, "application/octet-stream");
+        UploadSessionDto second = resourceService.createUploadSession(USER_ID, "folder/", "file.bin", 10, "application/octet-stream");
+        resourceService.uploadChunk(USER_ID, first.getId(), 0, 10, new ByteArrayInputStream(new byte[10]));
+        resourceService.uploadChunk(USER_ID, second.getId(), 0, 10, new ByteArrayInputStream(new byte[10]));
+        resourceService.completeUploadSession(USER_ID, first.getId());
+
+        assertThrows(ResourceAlreadyExistsException.class, () -> resourceService.completeUploadSession(USER_ID, second.getId()));
+        resourceService.abortUploadSession(USER_ID, second.getId());
+    }
+
+    @Test
+    void shouldNotFindSessionOfOtherUser() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        UploadSessionDto session = resourceService.createUploadSession(USER_ID, "folder/", "file.bin", 10, "application/octet-stream");
+
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getUploadSession(2L, session.getId()));
+        resourceService.abortUploadSession(USER_ID, session.getId());
+    }
+
+    /**
+     * One full chunk of the smallest size MinIO accepts and a short last one
+     */
+    private byte[] createContent() {
+        byte[] content = new byte[5 * 1024 * 1024 + 10];
+        Arrays.fill(content, (byte) 'a');
+        content[content.length - 1] = 'z';
+        return content;
+    }
+
+    private byte[] download(String path) throws ResourceNotFoundException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourceBinaryContent(resourceService.getDownloadableResource(USER_ID, path), out);
+        return out.toByteArray();
+    }
+
+}
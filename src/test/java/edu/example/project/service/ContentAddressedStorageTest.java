@@ -0,0 +1,182 @@
+package edu.example.project.service;
+
+import edu.example.project.config.BucketProperties;
+import edu.example.project.config.ContentAddressedStorageProperties;
+import edu.example.project.dto.ResourceDto;
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.model.ContentBlob;
+import edu.example.project.repository.ContentBlobRepository;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "storage.cas.enabled=true")
+@ActiveProfiles("test")
+@Testcontainers
+public class ContentAddressedStorageTest {
+
+    private static final Long USER_ID = 1L;
+
+    private static final byte[] CONTENT = "mockedText".getBytes();
+
+    @Autowired
+    ResourceService resourceService;
+
+    @Autowired
+    ContentBlobRepository contentBlobRepository;
+
+    @Autowired
+    MinioService minioService;
+
+    @Autowired
+    ContentReferenceService contentReferenceService;
+
+    @Autowired
+    ContentAddressedStorageProperties contentAddressedStorageProperties;
+
+    @Autowired
+    BucketProperties bucketProperties;
+
+    @Autowired
+    MinioClient minioClient;
+
+    @MockitoBean
+    ZipCrcCache zipCrcCache;
+
+    @BeforeEach
+    void createFolder() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        resourceService.createFolder(USER_ID, "folder/");
+    }
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, "folder/");
+        contentBlobRepository.deleteAll();
+    }
+
+    @Test
+    void shouldStoreSameContentOnce() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", CONTENT),
+                new MockMultipartFile("file", "b.txt", "text/plain", CONTENT)
+        ));
+
+        assertEquals(2, contentBlobRepository.findById(sha256(CONTENT)).orElseThrow().getRefCount());
+        ResourceDto info = resourceService.getResourceInfo(USER_ID, "folder/b.txt");
+        assertEquals(CONTENT.length, info.getSize());
+        assertEquals(sha256(CONTENT), info.getEtag());
+        assertArrayEquals(CONTENT, download("folder/b.txt"));
+        assertEquals(CONTENT.length, resourceService.getFolderContents(USER_ID, "folder/").getFirst().getSize());
+    }
+
+    @Test
+    void shouldUploadByKnownHashWithoutContent() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT)));
+
+        ResourceDto resource = resourceService.uploadResourceByHash(USER_ID, "folder/", "copy/a.txt", sha256(CONTENT), CONTENT.length, "text/plain");
+
+        assertEquals("folder/copy/", resource.getPath());
+        assertEquals(CONTENT.length, resource.getSize());
+        assertArrayEquals(CONTENT, download("folder/copy/a.txt"));
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.uploadResourceByHash(USER_ID, "folder/", "b.txt",
+                sha256("unknown".getBytes()), 7, "text/plain"));
+    }
+
+    @Test
+    void shouldRemoveContentWithoutReferences() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", CONTENT),
+                new MockMultipartFile("file", "b.txt", "text/plain", CONTENT)
+        ));
+
+        resourceService.moveResource(USER_ID, "folder/a.txt", "folder/c.txt");
+        assertEquals(2, contentBlobRepository.findById(sha256(CONTENT)).orElseThrow().getRefCount());
+        resourceService.removeResource(USER_ID, "folder/c.txt");
+        assertEquals(1, contentBlobRepository.findById(sha256(CONTENT)).orElseThrow().getRefCount());
+        resourceService.removeResource(USER_ID, "folder/b.txt");
+        assertEquals(0, contentBlobRepository.findById(sha256(CONTENT)).orElseThrow().getRefCount());
+
+        minioService.removeUnreferencedContent();
+
+        assertTrue(contentBlobRepository.findById(sha256(CONTENT)).isEmpty());
+        resourceService.uploadResources(USER_ID, "folder/", List.of(new MockMultipartFile("file", "d.txt", "text/plain", CONTENT)));
+        assertArrayEquals(CONTENT, download("folder/d.txt"));
+    }
+
+    @Test
+    void shouldNotUploadByHashOfContentOfOtherUser() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT)));
+
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.uploadResourceByHash(2L, "", "a.txt",
+                sha256(CONTENT), CONTENT.length, "text/plain"));
+        assertEquals(1, contentBlobRepository.findById(sha256(CONTENT)).orElseThrow().getRefCount());
+    }
+
+    @Test
+    void shouldKeepContentWrittenWhileSweepRuns() throws Exception {
+        String hash = sha256(CONTENT);
+        resourceService.uploadResources(USER_ID, "folder/", List.of(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT)));
+        resourceService.removeResource(USER_ID, "folder/a.txt");
+        minioService.removeUnreferencedContent();
+        String contentKey = contentAddressedStorageProperties.getPrefix() + hash;
+
+        contentReferenceService.addReference(hash, CONTENT.length, () -> {
+            try {
+                minioClient.putObject(PutObjectArgs.builder()
+                        .bucket(bucketProperties.getDefaultName())
+                        .object(contentKey)
+                        .stream(new ByteArrayInputStream(CONTENT), CONTENT.length, -1)
+                        .build());
+            } catch (Exception exception) {
+                throw new RuntimeException(exception);
+            }
+            minioService.removeUnreferencedContent();
+        });
+        minioService.removeUnreferencedContent();
+
+        ContentBlob blob = contentBlobRepository.findById(hash).orElseThrow();
+        assertEquals(1, blob.getRefCount());
+        assertTrue(blob.isStored());
+        assertEquals(CONTENT.length, minioClient.statObject(StatObjectArgs.builder()
+                .bucket(bucketProperties.getDefaultName())
+                .object(contentKey)
+                .build()).size());
+        contentReferenceService.removeReference(hash);
+        minioService.removeUnreferencedContent();
+    }
+
+    private byte[] download(String path) throws ResourceNotFoundException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourceBinaryContent(resourceService.getDownloadableResource(USER_ID, path), out);
+        return out.toByteArray();
+    }
+
+    private String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+}
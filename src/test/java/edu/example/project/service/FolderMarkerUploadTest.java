@@ -0,0 +1,57 @@
+package edu.example.project.service;
+
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.web.multipart.MultipartFile;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Counts PUTs of folder markers, so it lives next to {@link MinioService} to verify its protected methods
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers
+public class FolderMarkerUploadTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Autowired
+    ResourceService resourceService;
+
+    @MockitoSpyBean
+    MinioService minioService;
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, "folder/");
+    }
+
+    @Test
+    void shouldCreateEveryAncestorFolderOnceForDeepTreeUpload() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add(new MockMultipartFile("file", "a/b/c/file" + i + ".txt", "text/plain", "mockedText".getBytes()));
+        }
+        files.add(new MockMultipartFile("file", "a/d/file.txt", "text/plain", "mockedText".getBytes()));
+        resourceService.createFolder(USER_ID, "folder/");
+
+        resourceService.uploadResources(USER_ID, "folder/", files);
+
+        verify(minioService, times(4)).putEmptyObject(argThat(path -> path.startsWith("user-1-files/folder/a/")));
+    }
+
+}
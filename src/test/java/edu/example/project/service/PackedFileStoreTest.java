@@ -0,0 +1,159 @@
+package edu.example.project.service;
+
+import edu.example.project.dto.ResourceDto;
+import edu.example.project.exception.ResourceAlreadyExistsException;
+import edu.example.project.exception.ResourceNotFoundException;
+import edu.example.project.model.Pack;
+import edu.example.project.repository.PackRepository;
+import edu.example.project.repository.PackedFileRepository;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "storage.pack.enabled=true")
+@ActiveProfiles("test")
+@Testcontainers
+public class PackedFileStoreTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Autowired
+    ResourceService resourceService;
+
+    @Autowired
+    PackedFileStore packedFileStore;
+
+    @Autowired
+    MinioService minioService;
+
+    @Autowired
+    PackRepository packRepository;
+
+    @Autowired
+    PackedFileRepository packedFileRepository;
+
+    @MockitoBean
+    ZipCrcCache zipCrcCache;
+
+    @BeforeEach
+    void createFolder() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        resourceService.createFolder(USER_ID, "folder/");
+    }
+
+    @AfterEach
+    void removeFiles() throws ResourceNotFoundException {
+        resourceService.removeResource(USER_ID, "folder/");
+        packRepository.deleteAll();
+    }
+
+    @Test
+    void shouldPackSmallFilesOfOneUpload() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        byte[] big = new byte[64 * 1024];
+
+        List<ResourceDto> uploaded = resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "first".getBytes()),
+                new MockMultipartFile("file", "big.bin", "application/octet-stream", big),
+                new MockMultipartFile("file", "dir/b.txt", "text/plain", "second".getBytes())
+        ));
+
+        assertEquals(List.of("a.txt", "big.bin", "b.txt"), uploaded.stream().map(ResourceDto::getName).toList());
+        assertEquals(1, packRepository.count());
+        assertEquals(2, packedFileRepository.count());
+        assertArrayEquals("second".getBytes(), download("folder/dir/b.txt"));
+        assertEquals(6, resourceService.getResourceInfo(USER_ID, "folder/dir/b.txt").getSize());
+        assertEquals(3, resourceService.getFolderContents(USER_ID, "folder/").size());
+        assertEquals(1, resourceService.getFolderContents(USER_ID, "folder/dir/").size());
+    }
+
+    @Test
+    void shouldListPackedAndStoredFilesInKeyOrder() throws Exception {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "first".getBytes()),
+                new MockMultipartFile("file", "b.bin", "application/octet-stream", new byte[64 * 1024]),
+                new MockMultipartFile("file", "c.txt", "text/plain", "second".getBytes()),
+                new MockMultipartFile("file", "dir/d.txt", "text/plain", "third".getBytes())
+        ));
+
+        List<String> keys = new ArrayList<>();
+        for (Result<Item> result : minioService.listObjects("user-1-files/folder/", true)) {
+            String key = result.get().objectName();
+            if (!key.endsWith("/")) {
+                keys.add(key);
+            }
+        }
+
+        assertEquals(List.of("user-1-files/folder/a.txt", "user-1-files/folder/b.bin", "user-1-files/folder/c.txt",
+                "user-1-files/folder/dir/d.txt"), keys);
+    }
+
+    @Test
+    void shouldCacheCrcOfPackedFile() throws ResourceAlreadyExistsException, ResourceNotFoundException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "first".getBytes())
+        ));
+
+        CRC32 crc = new CRC32();
+        crc.update("first".getBytes());
+        String etag = resourceService.getResourceInfo(USER_ID, "folder/a.txt").getEtag();
+        verify(zipCrcCache).saveWritten(etag, "first".length(), crc.getValue());
+    }
+
+    @Test
+    void shouldMoveAndRemovePackedFiles() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "first".getBytes()),
+                new MockMultipartFile("file", "dir/b.txt", "text/plain", "second".getBytes())
+        ));
+        String etag = resourceService.getResourceInfo(USER_ID, "folder/dir/b.txt").getEtag();
+
+        resourceService.moveResource(USER_ID, "folder/dir/", "folder/moved/");
+        resourceService.removeResource(USER_ID, "folder/a.txt");
+
+        assertArrayEquals("second".getBytes(), download("folder/moved/b.txt"));
+        assertEquals(etag, resourceService.getResourceInfo(USER_ID, "folder/moved/b.txt").getEtag());
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(USER_ID, "folder/a.txt"));
+        assertThrows(ResourceNotFoundException.class, () -> resourceService.getResourceInfo(USER_ID, "folder/dir/b.txt"));
+    }
+
+    @Test
+    void shouldCompactPackWithRemovedFiles() throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException {
+        resourceService.uploadResources(USER_ID, "folder/", List.of(
+                new MockMultipartFile("file", "a.txt", "text/plain", "removed file".getBytes()),
+                new MockMultipartFile("file", "b.txt", "text/plain", "kept".getBytes())
+        ));
+        String oldPackKey = packRepository.findAll().getFirst().getObjectKey();
+        resourceService.removeResource(USER_ID, "folder/a.txt");
+
+        packedFileStore.compactPacks();
+
+        Pack oldPack = packRepository.findById(oldPackKey).orElseThrow();
+        assertNotNull(oldPack.getRetiredAt());
+        String newPackKey = packedFileRepository.findById("user-1-files/folder/b.txt").orElseThrow().getPackKey();
+        assertEquals(4, packRepository.findById(newPackKey).orElseThrow().getSize());
+        assertArrayEquals("kept".getBytes(), download("folder/b.txt"));
+    }
+
+    private byte[] download(String path) throws ResourceNotFoundException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resourceService.writeResourceBinaryContent(resourceService.getDownloadableResource(USER_ID, path), out);
+        return out.toByteArray();
+    }
+
+}
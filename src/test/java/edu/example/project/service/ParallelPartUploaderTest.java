@@ -0,0 +1,84 @@
+package edu.example.project.service;
+
+import edu.example.project.config.MultipartMinioClient;
+import edu.example.project.config.UploadProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "storage.upload.part-size=5242880")
+@ActiveProfiles("test")
+@Testcontainers
+public class ParallelPartUploaderTest {
+
+    private static final String KEY = "user-1-files/file.bin";
+
+    @Autowired
+    ParallelPartUploader parallelPartUploader;
+
+    @Autowired
+    UploadProperties uploadProperties;
+
+    @MockitoSpyBean
+    MultipartMinioClient multipartMinioClient;
+
+    @Autowired
+    MinioService minioService;
+
+    @MockitoBean
+    ZipCrcCache zipCrcCache;
+
+    @AfterEach
+    void removeFile() {
+        minioService.removeObject(KEY);
+    }
+
+    @Test
+    void shouldAbortUploadAndReturnBuffersWhenPartFails() throws Exception {
+        doThrow(new IOException("Part failed")).when(multipartMinioClient)
+                .uploadPart(anyString(), eq(KEY), anyString(), eq(2), any(), anyLong());
+        byte[] content = new byte[Math.toIntExact(3 * uploadProperties.getPartSize() + 10)];
+
+        assertThrows(RuntimeException.class,
+                () -> parallelPartUploader.upload(KEY, new ByteArrayInputStream(content), "application/octet-stream"));
+
+        verify(multipartMinioClient).abortMultipartUpload(anyString(), eq(KEY), anyString());
+        verify(multipartMinioClient, never()).completeMultipartUpload(anyString(), eq(KEY), anyString(), any());
+        assertEquals(uploadProperties.getPartBuffers(), bufferPermits().availablePermits());
+    }
+
+    @Test
+    void shouldPutSmallContentWithoutMultipartUpload() throws Exception {
+        byte[] content = "mockedText".getBytes();
+
+        WrittenObject written = parallelPartUploader.upload(KEY, new ByteArrayInputStream(content), "text/plain");
+
+        assertEquals(content.length, written.size());
+        verify(multipartMinioClient, never()).createMultipartUpload(anyString(), eq(KEY), anyString());
+        assertEquals(uploadProperties.getPartBuffers(), bufferPermits().availablePermits());
+    }
+
+    private Semaphore bufferPermits() {
+        return (Semaphore) ReflectionTestUtils.getField(parallelPartUploader, "bufferPermits");
+    }
+
+}
@@ -0,0 +1,99 @@
+package edu.example.project.service;
+
+import edu.example.project.config.UploadProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UploadTaskRunnerTest {
+
+    private static final int PARALLELISM = 2;
+
+    UploadTaskRunner uploadTaskRunner;
+
+    @BeforeEach
+    void createRunner() {
+        UploadProperties uploadProperties = new UploadProperties();
+        uploadProperties.setParallelism(PARALLELISM);
+        uploadTaskRunner = new UploadTaskRunner(uploadProperties);
+        ReflectionTestUtils.invokeMethod(uploadTaskRunner, "createExecutor");
+    }
+
+    @AfterEach
+    void shutdownRunner() {
+        ReflectionTestUtils.invokeMethod(uploadTaskRunner, "shutdownExecutor");
+    }
+
+    @Test
+    void shouldReturnResultsInOrderOfTasks() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int number = i;
+            tasks.add(() -> {
+                Thread.sleep(10L * (6 - number));
+                return number;
+            });
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), uploadTaskRunner.invokeAll(tasks));
+    }
+
+    @Test
+    void shouldRunAtMostParallelismTasksAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+
+        uploadTaskRunner.invokeAll(tasks);
+
+        assertEquals(PARALLELISM, maxRunning.get());
+    }
+
+    @Test
+    void shouldNotStartTasksAfterFailureAndAwaitRunningOnes() {
+        CountDownLatch siblingStarted = new CountDownLatch(1);
+        AtomicBoolean siblingFinished = new AtomicBoolean();
+        AtomicInteger startedAfterFailure = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("Upload failed");
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            siblingStarted.await();
+            throw failure;
+        });
+        tasks.add(() -> {
+            siblingStarted.countDown();
+            Thread.sleep(100);
+            siblingFinished.set(true);
+            return null;
+        });
+        for (int i = 0; i < 5; i++) {
+            tasks.add(() -> {
+                startedAfterFailure.incrementAndGet();
+                return null;
+            });
+        }
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> uploadTaskRunner.invokeAll(tasks)));
+        assertTrue(siblingFinished.get());
+        assertEquals(0, startedAfterFailure.get());
+    }
+
+}
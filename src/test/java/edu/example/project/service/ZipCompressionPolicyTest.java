@@ -0,0 +1,67 @@
+package edu.example.project.service;
+
+import edu.example.project.config.DownloadProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipCompressionPolicyTest {
+
+    private static final byte[] TEXT = "mockedText ".repeat(400).getBytes(StandardCharsets.UTF_8);
+
+    DownloadProperties downloadProperties = new DownloadProperties();
+
+    ZipCompressionPolicy zipCompressionPolicy = new ZipCompressionPolicy(downloadProperties);
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {"photo.jpg", "PHOTO.PNG", "movie.mp4", "archive.zip", "report.docx", "font.woff2", "dir/data.tgz"}
+    )
+    void whenCompressedFormat_thenStored(String name) {
+        assertEquals(Deflater.NO_COMPRESSION, zipCompressionPolicy.resolveLevel(name, TEXT));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {"notes.txt", "page.html", "data.json", "noextension", "unknown.qwerty"}
+    )
+    void whenTextOfCompressibleFormat_thenDeflated(String name) {
+        assertEquals(downloadProperties.getZipDeflateLevel(), zipCompressionPolicy.resolveLevel(name, TEXT));
+    }
+
+    @Test
+    void whenHeadHasHighEntropy_thenStored() {
+        assertEquals(Deflater.NO_COMPRESSION, zipCompressionPolicy.resolveLevel("data.bin", uniformBytes(256, 4096)));
+    }
+
+    @Test
+    void whenHeadIsTooShortForEntropy_thenDeflated() {
+        assertEquals(downloadProperties.getZipDeflateLevel(), zipCompressionPolicy.resolveLevel("data.bin", uniformBytes(256, 1023)));
+    }
+
+    @Test
+    void shouldStoreOnlyEntropyAboveThreshold() {
+        // 128 byte values with equal frequencies have entropy of 7 bits per byte
+        byte[] head = uniformBytes(128, 4096);
+
+        downloadProperties.setZipEntropyThreshold(7.1);
+        assertEquals(downloadProperties.getZipDeflateLevel(), zipCompressionPolicy.resolveLevel("data.bin", head));
+
+        downloadProperties.setZipEntropyThreshold(6.9);
+        assertEquals(Deflater.NO_COMPRESSION, zipCompressionPolicy.resolveLevel("data.bin", head));
+    }
+
+    private byte[] uniformBytes(int values, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % values);
+        }
+        return bytes;
+    }
+
+}